@@ -1,13 +1,29 @@
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
 
 import javalib.impworld.World;
 import javalib.impworld.WorldScene;
+import javalib.worldimages.ComputedPixelImage;
 import javalib.worldimages.RectangleImage;
 import javalib.worldimages.TextImage;
 import javalib.worldimages.WorldEnd;
@@ -46,536 +62,3213 @@ class Stack<T> implements ICollection<T> {
     return this.contents.pop();
   }
 
-  // EFFECT: adds the item to the Front of the ArrayDeque<T>
-  public void add(T item) {
-    this.contents.addFirst(item);
+  // EFFECT: adds the item to the Front of the ArrayDeque<T>
+  public void add(T item) {
+    this.contents.addFirst(item);
+  }
+}
+
+class Queue<T> implements ICollection<T> {
+  ArrayDeque<T> contents;
+
+  Queue() {
+    this.contents = new ArrayDeque<T>();
+  }
+
+  // check if the contents ArrayDeque<T> is empty
+  public boolean isEmpty() {
+    return this.contents.isEmpty();
+  }
+
+  // EFFECT: removes the first item of the ArrayDeque<T>
+  // returns the first item of the collection
+  public T pop() {
+    return this.contents.pop();
+  }
+
+  // EFFECT: adds the item to the Front of the ArrayDeque<T>
+  public void add(T item) {
+    this.contents.addLast(item); // NOTE: Different from Stack!
+  }
+}
+
+//Represents a mutable collection of cell indices, without boxing them
+interface IIntCollection {
+
+  // Is this collection empty?
+  boolean isEmpty();
+
+  // EFFECT: adds the item to the collection
+  void add(int item);
+
+  // Returns the first item of the collection
+  // EFFECT: removes that first item
+  int pop();
+}
+
+class IntStack implements IIntCollection {
+  int[] items;
+  int size;
+
+  IntStack() {
+    this.items = new int[16];
+    this.size = 0;
+  }
+
+  // check if the stack is empty
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // EFFECT: removes the most recently added item
+  // returns that item
+  public int pop() {
+    return this.items[--this.size];
+  }
+
+  // EFFECT: adds the item to the top of the stack, doubling the array if full
+  public void add(int item) {
+    if (this.size == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.size * 2);
+    }
+    this.items[this.size++] = item;
+  }
+}
+
+class IntQueue implements IIntCollection {
+  int[] items; // ring buffer holding the queue from head onwards
+  int head;
+  int size;
+
+  IntQueue() {
+    this.items = new int[16];
+    this.head = 0;
+    this.size = 0;
+  }
+
+  // check if the queue is empty
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // EFFECT: removes the least recently added item
+  // returns that item
+  public int pop() {
+    int item = this.items[this.head];
+    this.head = (this.head + 1) & (this.items.length - 1);
+    this.size--;
+    return item;
+  }
+
+  // EFFECT: adds the item to the back of the queue, doubling the array if full
+  public void add(int item) {
+    if (this.size == this.items.length) {
+      // unwrap the ring into a bigger array, keeping its length a power of two
+      int[] bigger = new int[this.size * 2];
+      int tail = this.items.length - this.head;
+      System.arraycopy(this.items, this.head, bigger, 0, tail);
+      System.arraycopy(this.items, 0, bigger, tail, this.head);
+      this.items = bigger;
+      this.head = 0;
+    }
+    this.items[(this.head + this.size) & (this.items.length - 1)] = item;
+    this.size++;
+  }
+}
+
+// Represents a binary min-heap of cells keyed by long priorities, which can
+// lower the priority of a cell already in it (decrease-key)
+class IndexedMinHeap {
+  int[] heap; // cells in heap order
+  long[] priority; // priority of each cell in the heap, indexed by cell
+  int[] position; // where each cell sits in heap, -1 if it isn't in it
+  int size;
+
+  IndexedMinHeap(int cells) {
+    this.heap = new int[cells];
+    this.priority = new long[cells];
+    this.position = new int[cells];
+    Arrays.fill(this.position, -1);
+    this.size = 0;
+  }
+
+  // is this heap empty?
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // is the cell in this heap?
+  boolean contains(int cell) {
+    return this.position[cell] >= 0;
+  }
+
+  // EFFECT: adds the cell with the given priority, or lowers its priority to the
+  // given one if it's already in the heap with a higher one
+  void push(int cell, long priority) {
+    if (!this.contains(cell)) {
+      this.position[cell] = this.size;
+      this.heap[this.size++] = cell;
+    }
+    else if (priority >= this.priority[cell]) {
+      return;
+    }
+    this.priority[cell] = priority;
+    this.siftUp(this.position[cell]);
+  }
+
+  // returns the cell with the lowest priority
+  // EFFECT: removes that cell from the heap
+  int pop() {
+    int result = this.heap[0];
+    this.position[result] = -1;
+    this.size--;
+    if (this.size > 0) {
+      this.heap[0] = this.heap[this.size];
+      this.position[this.heap[0]] = 0;
+      this.siftDown(0);
+    }
+    return result;
+  }
+
+  // EFFECT: moves the cell at index i up until its parent isn't higher
+  void siftUp(int i) {
+    int cell = this.heap[i];
+    while (i > 0 && this.priority[this.heap[(i - 1) / 2]] > this.priority[cell]) {
+      this.heap[i] = this.heap[(i - 1) / 2];
+      this.position[this.heap[i]] = i;
+      i = (i - 1) / 2;
+    }
+    this.heap[i] = cell;
+    this.position[cell] = i;
+  }
+
+  // EFFECT: moves the cell at index i down until neither child is lower
+  void siftDown(int i) {
+    int cell = this.heap[i];
+    while (2 * i + 1 < this.size) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.size
+          && this.priority[this.heap[child + 1]] < this.priority[this.heap[child]]) {
+        child++;
+      }
+      if (this.priority[this.heap[child]] >= this.priority[cell]) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      this.position[this.heap[i]] = i;
+      i = child;
+    }
+    this.heap[i] = cell;
+    this.position[cell] = i;
+  }
+}
+
+// A worklist that gives back the cell with the lowest known cost from the start,
+// plus an estimate of the cost left to the finish: with no estimate it runs
+// Dijkstra's algorithm, with the Manhattan distance and unit steps it runs A*
+// the cost of an added cell is worked out from the cell the search recorded in
+// cameFrom; when that isn't cheaper than the cost already known, the recorded
+// cell is put back to the cheaper one
+class PriorityWorklist implements IIntCollection {
+  GridSearch search;
+  EdgeWeights weights; // cost of each step, or null for steps costing 1
+  boolean manhattan; // estimate the cost left with the Manhattan distance?
+  IndexedMinHeap heap;
+  long[] cost; // lowest known cost from the start to each cell
+  int[] via; // the cell that cost was reached through
+  boolean started; // has the start been added?
+
+  PriorityWorklist(GridSearch search, EdgeWeights weights, boolean manhattan) {
+    this.search = search;
+    this.weights = weights;
+    this.manhattan = manhattan;
+    this.heap = new IndexedMinHeap(search.grid.size());
+    this.cost = new long[search.grid.size()];
+    this.via = new int[search.grid.size()];
+    Arrays.fill(this.cost, Long.MAX_VALUE);
+    this.started = false;
+  }
+
+  // returns a worklist for Dijkstra's algorithm with the given edge weights
+  static PriorityWorklist dijkstra(GridSearch search, EdgeWeights weights) {
+    return new PriorityWorklist(search, weights, false);
+  }
+
+  // returns a worklist for A* with unit steps and the Manhattan distance
+  static PriorityWorklist aStar(GridSearch search) {
+    return new PriorityWorklist(search, null, true);
+  }
+
+  // check if there are no cells left
+  public boolean isEmpty() {
+    return this.heap.isEmpty();
+  }
+
+  // EFFECT: removes the cell with the lowest priority
+  // returns that cell
+  public int pop() {
+    return this.heap.pop();
+  }
+
+  // EFFECT: adds the cell, or lowers its priority if it's now reached more cheaply
+  public void add(int cell) {
+    if (!this.started) {
+      // the first cell added is the start
+      this.started = true;
+      this.cost[cell] = 0;
+      this.heap.push(cell, this.estimate(cell));
+      return;
+    }
+
+    int from = this.search.cameFrom(cell);
+    long reached = this.cost[from] + this.stepCost(from, cell);
+    if (reached < this.cost[cell]) {
+      this.cost[cell] = reached;
+      this.via[cell] = from;
+      this.heap.push(cell, reached + this.estimate(cell));
+    }
+    else {
+      this.search.reachedFrom(cell, this.via[cell]);
+    }
+  }
+
+  // returns the cost of stepping between two adjacent cells
+  long stepCost(int from, int to) {
+    return this.weights == null ? 1 : this.weights.weight(this.search.grid.edgeBetween(from, to));
+  }
+
+  // returns the estimated cost from the cell to the finish
+  long estimate(int cell) {
+    if (!this.manhattan) {
+      return 0;
+    }
+    MazeGrid grid = this.search.grid;
+    return Math.abs(cell % grid.cols - this.search.finish % grid.cols)
+        + Math.abs(cell / grid.cols - this.search.finish / grid.cols);
+  }
+}
+
+// Represents the walls of a rectangular maze as one byte per cell
+// each cell keeps four passage bits: a set bit means the wall on that side has
+// been knocked down, to the north, south, east or west
+class MazeGrid {
+  static final int NORTH = 1;
+  static final int SOUTH = 2;
+  static final int EAST = 4;
+  static final int WEST = 8;
+  // directions in the order neighbors are visited
+  static final int[] DIRECTIONS = { NORTH, SOUTH, EAST, WEST };
+
+  int cols;
+  int rows;
+  byte[] cells; // passage bits of each cell, indexed by row * cols + col
+
+  MazeGrid(int cols, int rows) {
+    this.cols = cols;
+    this.rows = rows;
+    this.cells = new byte[cols * rows];
+  }
+
+  // returns the number of cells in this grid
+  int size() {
+    return this.cells.length;
+  }
+
+  // returns the dense index of the cell at the given column and row
+  int index(int col, int row) {
+    return row * this.cols + col;
+  }
+
+  // is the wall on the given side of the cell knocked down?
+  boolean isOpen(int cell, int dir) {
+    return (this.cells[cell] & dir) != 0;
+  }
+
+  // returns the cell next to the given cell in the given direction,
+  // or -1 if that would leave the grid
+  int neighbor(int cell, int dir) {
+    int col = cell % this.cols;
+    if (dir == NORTH) {
+      return cell >= this.cols ? cell - this.cols : -1;
+    }
+    else if (dir == SOUTH) {
+      return cell + this.cols < this.cells.length ? cell + this.cols : -1;
+    }
+    else if (dir == EAST) {
+      return col != this.cols - 1 ? cell + 1 : -1;
+    }
+    else {
+      return col != 0 ? cell - 1 : -1;
+    }
+  }
+
+  // EFFECT: fills out with the cells reachable from the given cell in one step
+  // returns how many were written
+  int openNeighbors(int cell, int[] out) {
+    int count = 0;
+    int bits = this.cells[cell];
+    if ((bits & NORTH) != 0) {
+      out[count++] = cell - this.cols;
+    }
+    if ((bits & SOUTH) != 0) {
+      out[count++] = cell + this.cols;
+    }
+    if ((bits & EAST) != 0) {
+      out[count++] = cell + 1;
+    }
+    if ((bits & WEST) != 0) {
+      out[count++] = cell - 1;
+    }
+    return count;
+  }
+
+  // returns the direction to step from one cell to an adjacent one
+  int direction(int from, int to) {
+    if (to == from - this.cols) {
+      return NORTH;
+    }
+    else if (to == from + this.cols) {
+      return SOUTH;
+    }
+    else if (to == from + 1) {
+      return EAST;
+    }
+    else {
+      return WEST;
+    }
+  }
+
+  // returns the direction facing back the given one
+  static int opposite(int dir) {
+    if (dir == NORTH) {
+      return SOUTH;
+    }
+    else if (dir == SOUTH) {
+      return NORTH;
+    }
+    else if (dir == EAST) {
+      return WEST;
+    }
+    else {
+      return EAST;
+    }
+  }
+
+  // EFFECT: knocks down the wall between the cell and its neighbor in the
+  // given direction, on both sides
+  void open(int cell, int dir) {
+    this.cells[cell] |= dir;
+    this.cells[this.neighbor(cell, dir)] |= opposite(dir);
+  }
+
+  // returns the number of undirected edges between adjacent cells
+  int edgeCount() {
+    return this.rows * (this.cols - 1) + this.cols * (this.rows - 1);
+  }
+
+  // packs the edge leaving the given cell to the EAST or SOUTH into one int
+  // every undirected edge has exactly one packed form
+  static int edge(int cell, int dir) {
+    return cell << 1 | (dir == SOUTH ? 1 : 0);
+  }
+
+  // returns the cell a packed edge leaves from
+  static int edgeCell(int edge) {
+    return edge >>> 1;
+  }
+
+  // returns the direction (EAST or SOUTH) a packed edge leaves in
+  static int edgeDir(int edge) {
+    return (edge & 1) == 0 ? EAST : SOUTH;
+  }
+
+  // returns the packed edge between two adjacent cells
+  int edgeBetween(int a, int b) {
+    int from = Math.min(a, b);
+    return edge(from, Math.max(a, b) == from + 1 && from % this.cols != this.cols - 1
+        ? EAST : SOUTH);
+  }
+
+  // EFFECT: puts every wall back up
+  void clear() {
+    Arrays.fill(this.cells, (byte) 0);
+  }
+}
+
+// Represents a list of weighted undirected edges between maze cells, stored
+// as packed edges (see MazeGrid.edge) in primitive arrays instead of objects
+class EdgeList {
+  int size;
+  int[] edge; // packed edge: the cell it leaves from and EAST or SOUTH
+  int[] weight;
+
+  EdgeList(int capacity) {
+    this.size = 0;
+    this.edge = new int[capacity];
+    this.weight = new int[capacity];
+  }
+
+  // EFFECT: appends an edge to the end of this list
+  void add(int edge, int weight) {
+    this.edge[this.size] = edge;
+    this.weight[this.size] = weight;
+    this.size++;
+  }
+
+  // returns a copy of this list ordered by weight, where every weight is in
+  // [0, maxWeight); edges of equal weight keep their relative order
+  EdgeList sortByWeight(int maxWeight) {
+    // counting sort: count each weight, then turn the counts into start offsets
+    int[] offsets = new int[maxWeight + 1];
+    for (int i = 0; i < this.size; i++) {
+      offsets[this.weight[i] + 1]++;
+    }
+    for (int w = 0; w < maxWeight; w++) {
+      offsets[w + 1] += offsets[w];
+    }
+
+    EdgeList result = new EdgeList(this.size);
+    for (int i = 0; i < this.size; i++) {
+      int j = offsets[this.weight[i]]++;
+      result.edge[j] = this.edge[i];
+      result.weight[j] = this.weight[i];
+    }
+    result.size = this.size;
+    return result;
+  }
+}
+
+// Represents disjoint sets of maze cells, keyed by dense cell index (row * cols + col)
+class UnionFind {
+  int[] parent; // parent[i] is the next cell up the tree from cell i
+  byte[] rank; // upper bound on the height of the tree rooted at each cell
+
+  UnionFind(int size) {
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    for (int i = 0; i < size; i++) {
+      this.parent[i] = i;
+    }
+  }
+
+  // returns the representative of the set containing the given cell
+  // EFFECT: compresses the path from the cell to its representative
+  int find(int cell) {
+    int root = cell;
+    while (this.parent[root] != root) {
+      root = this.parent[root];
+    }
+    while (this.parent[cell] != root) {
+      int next = this.parent[cell];
+      this.parent[cell] = root;
+      cell = next;
+    }
+    return root;
+  }
+
+  // returns the representative of the set containing the given cell without
+  // changing any set, so several threads may call it at once between unions
+  int root(int cell) {
+    while (this.parent[cell] != cell) {
+      cell = this.parent[cell];
+    }
+    return cell;
+  }
+
+  // EFFECT: merges the sets containing the two cells, attaching the shorter tree
+  // under the taller one
+  // returns false if the cells were already in the same set
+  boolean union(int a, int b) {
+    int rootA = this.find(a);
+    int rootB = this.find(b);
+    if (rootA == rootB) {
+      return false;
+    }
+    if (this.rank[rootA] < this.rank[rootB]) {
+      this.parent[rootA] = rootB;
+    }
+    else if (this.rank[rootA] > this.rank[rootB]) {
+      this.parent[rootB] = rootA;
+    }
+    else {
+      this.parent[rootB] = rootA;
+      this.rank[rootA]++;
+    }
+    return true;
+  }
+}
+
+// Represents a strategy for carving a perfect maze into a grid
+interface MazeGenerator {
+
+  // EFFECT: knocks down walls of the grid, which starts with all of them up,
+  // until every pair of cells is connected by exactly one path
+  void generate(MazeGrid grid, Random rand);
+}
+
+// Represents the weight of every edge of a maze
+interface EdgeWeights {
+
+  // returns the weight of the packed edge (see MazeGrid.edge), in
+  // [0, KruskalGenerator.MAX_WEIGHT)
+  int weight(int edge);
+}
+
+// Edge weights kept in an array, one per packed edge
+class StoredEdgeWeights implements EdgeWeights {
+  int[] weights;
+
+  StoredEdgeWeights(int[] weights) {
+    this.weights = weights;
+  }
+
+  // returns the stored weight of the packed edge
+  public int weight(int edge) {
+    return this.weights[edge];
+  }
+}
+
+// Edge weights computed as a hash of the seed and the packed edge, which
+// encodes the edge's cell and direction
+// nothing is stored and no edge depends on another, so any weight can be
+// recomputed at any time, from any thread, in any order
+class HashedEdgeWeights implements EdgeWeights {
+  long seed;
+
+  HashedEdgeWeights(long seed) {
+    this.seed = seed;
+  }
+
+  // returns the weight of the packed edge, mixing it with the seed like
+  // SplitMix64 mixes its counter
+  public int weight(int edge) {
+    long z = this.seed + (edge + 1L) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (int) ((z >>> 1) % KruskalGenerator.MAX_WEIGHT);
+  }
+}
+
+// Edge weights for a maze that wasn't carved by weight: every edge weighs the
+// same, so Dijkstra's algorithm searches it like BFS
+class UniformEdgeWeights implements EdgeWeights {
+
+  // returns 0, the weight of every edge
+  public int weight(int edge) {
+    return 0;
+  }
+}
+
+// Carves a maze as the minimum spanning tree of randomly weighted edges, using
+// Kruskal's algorithm
+class KruskalGenerator implements MazeGenerator {
+  static final int MAX_WEIGHT = 100 * 60; // edge weights are drawn from [0, MAX_WEIGHT)
+
+  EdgeList candidates; // every edge Kruskal may pick, in tie-breaking order
+  EdgeWeights weights; // weight of each packed edge
+  ForkJoinPool pool; // finds the tree with parallel Boruvka if given
+  // hash weights from the seed instead of drawing them from the Random in
+  // order, which is kept for the mazes existing seeds produce
+  boolean hashed;
+
+  KruskalGenerator() {
+    this(null, false);
+  }
+
+  KruskalGenerator(ForkJoinPool pool) {
+    this(pool, false);
+  }
+
+  KruskalGenerator(ForkJoinPool pool, boolean hashed) {
+    this.pool = pool;
+    this.hashed = hashed;
+  }
+
+  // EFFECT: weighs every edge of the grid and carves their minimum spanning tree
+  public void generate(MazeGrid grid, Random rand) {
+    this.assignEdges(grid, rand);
+    if (this.pool == null) {
+      this.kruskals(grid);
+    }
+    else {
+      new ParallelBoruvka(this.pool).carve(grid, this.candidates);
+    }
+    // nothing outlives the carving: see weigh for drawing the weights again
+    this.candidates = null;
+    this.weights = null;
+  }
+
+  // returns the weights the grid's edges get from a Random in the state the maze
+  // was generated from, so they don't have to be kept with every maze
+  EdgeWeights weigh(MazeGrid grid, Random rand) {
+    this.assignEdges(grid, rand);
+    EdgeWeights weights = this.weights;
+    this.candidates = null;
+    this.weights = null;
+    return weights;
+  }
+
+  // connect all adjacent cells with randomly weighted edges, each undirected
+  // edge listed once
+  void assignEdges(MazeGrid grid, Random rand) {
+    if (this.hashed) {
+      this.hashEdges(grid, rand);
+    }
+    else {
+      this.drawEdges(grid, rand);
+    }
+  }
+
+  // weighs every edge with a hash of one seed drawn from the Random, listing
+  // them in packed order to break ties
+  void hashEdges(MazeGrid grid, Random rand) {
+    this.weights = new HashedEdgeWeights(rand.nextLong());
+    this.candidates = new EdgeList(grid.edgeCount());
+    for (int edge = 0; edge < 2 * grid.size(); edge++) {
+      if (grid.neighbor(MazeGrid.edgeCell(edge), MazeGrid.edgeDir(edge)) >= 0) {
+        this.candidates.add(edge, this.weights.weight(edge));
+      }
+    }
+  }
+
+  // weighs every edge with draws from the Random, the way mazes have always been
+  // weighed
+  // weights are drawn once per direction (west, east, north, south of each cell in
+  // row-major order) so fixed seeds keep their mazes: an edge keeps the lower of
+  // its two draws and is ordered by where that draw happened
+  void drawEdges(MazeGrid grid, Random rand) {
+    int n = grid.size();
+    // forward[e] is the draw for packed edge e made by the cell it leaves from
+    int[] forward = new int[2 * n];
+    // drawn[4 * cell + slot] holds the packed edge (plus one) whose winning draw
+    // was made there
+    int[] drawn = new int[4 * n];
+    int[] weights = new int[2 * n];
+
+    for (int cell = 0; cell < n; cell++) {
+      int col = cell % grid.cols;
+      int row = cell / grid.cols;
+
+      if (col != 0) {
+        this.settle(drawn, forward, weights, rand, cell - 1, MazeGrid.EAST, 4 * cell);
+      }
+      if (col != grid.cols - 1) {
+        forward[MazeGrid.edge(cell, MazeGrid.EAST)] = rand.nextInt(MAX_WEIGHT);
+      }
+      if (row != 0) {
+        this.settle(drawn, forward, weights, rand, cell - grid.cols, MazeGrid.SOUTH,
+            4 * cell + 2);
+      }
+      if (row != grid.rows - 1) {
+        forward[MazeGrid.edge(cell, MazeGrid.SOUTH)] = rand.nextInt(MAX_WEIGHT);
+      }
+    }
+
+    this.weights = new StoredEdgeWeights(weights);
+    this.candidates = new EdgeList(grid.edgeCount());
+    for (int i = 0; i < drawn.length; i++) {
+      if (drawn[i] != 0) {
+        this.candidates.add(drawn[i] - 1, weights[drawn[i] - 1]);
+      }
+    }
+  }
+
+  // EFFECT: draws the backward weight of the edge leaving from in dir, keeps the
+  // lower of its two draws and records the slot the winning draw was made in
+  void settle(int[] drawn, int[] forward, int[] weights, Random rand, int from, int dir,
+      int slot) {
+    int e = MazeGrid.edge(from, dir);
+    int back = rand.nextInt(MAX_WEIGHT);
+    if (forward[e] <= back) {
+      // the forward draw came first, in the east or south slot of from
+      weights[e] = forward[e];
+      drawn[4 * from + (dir == MazeGrid.EAST ? 1 : 3)] = e + 1;
+    }
+    else {
+      weights[e] = back;
+      drawn[slot] = e + 1;
+    }
+  }
+
+  // return the candidate edges sorted by weight
+  EdgeList sortEdges() {
+    return this.candidates.sortByWeight(MAX_WEIGHT);
+  }
+
+  // EFFECT: carves the minimum spanning tree of the candidates into the grid,
+  // using Kruskal's algorithm
+  void kruskals(MazeGrid grid) {
+    // get all edges and sort them by weight
+    EdgeList sortedEdges = this.sortEdges();
+
+    // put every wall back up before knocking down the tree's
+    grid.clear();
+
+    // disjoint sets of cells, indexed by row * cols + col
+    UnionFind sets = new UnionFind(grid.size());
+
+    // to keep track of number of edges
+    int count = 0;
+    // position of the next lowest weight edge in sortedEdges
+    int next = 0;
+
+    // while #edges is less than #vertices - 1
+    while (count < grid.size() - 1) {
+      int src = MazeGrid.edgeCell(sortedEdges.edge[next]);
+      int dir = MazeGrid.edgeDir(sortedEdges.edge[next]);
+
+      // if this edge's source and destination are not already connected,
+      // add this edge to the MST and perform the union operation
+      if (sets.union(src, grid.neighbor(src, dir))) {
+        grid.open(src, dir);
+
+        // advance the counter
+        count++;
+      }
+      // discard this edge and go on to the next
+      next++;
+    }
+  }
+}
+
+// Finds the minimum spanning tree of a maze's candidate edges with Boruvka's
+// algorithm, searching for each component's cheapest edge in parallel
+// edges are compared by weight, then by position in the candidate list, which
+// is exactly the order Kruskal's stable sort visits them in; with no two edges
+// equal the tree is unique, so this carves the same maze as kruskals()
+class ParallelBoruvka {
+  ForkJoinPool pool;
+
+  ParallelBoruvka(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  // EFFECT: carves the minimum spanning tree of the candidates into the grid
+  void carve(MazeGrid grid, EdgeList candidates) {
+    grid.clear();
+    int n = grid.size();
+    UnionFind sets = new UnionFind(n);
+
+    // comp[cell] is the root of the cell's component as of the last round
+    int[] comp = new int[n];
+    // roots of the components that are left
+    int[] roots = new int[n];
+    int rootCount = n;
+    for (int cell = 0; cell < n; cell++) {
+      comp[cell] = cell;
+      roots[cell] = cell;
+    }
+
+    // candidates that still join two different components
+    int[] live = new int[candidates.size];
+    int liveCount = candidates.size;
+    for (int i = 0; i < live.length; i++) {
+      live[i] = i;
+    }
+
+    // cheapest edge leaving each component, as weight << 32 | candidate position
+    AtomicLongArray cheapest = new AtomicLongArray(n);
+    for (int cell = 0; cell < n; cell++) {
+      cheapest.set(cell, Long.MAX_VALUE);
+    }
+
+    int chunks = Math.max(1, this.pool.getParallelism() * 4);
+    int[] kept = new int[chunks];
+    while (liveCount > 0) {
+      // drop edges inside a component and find every component's cheapest edge
+      this.pool.invoke(new CheapestEdgeTask(grid, candidates, comp, cheapest, live, liveCount,
+          chunks, kept, 0, chunks));
+      liveCount = this.gather(live, liveCount, kept);
+
+      // add every component's cheapest edge to the tree
+      for (int i = 0; i < rootCount; i++) {
+        long best = cheapest.get(roots[i]);
+        if (best != Long.MAX_VALUE) {
+          cheapest.set(roots[i], Long.MAX_VALUE);
+          int edge = candidates.edge[(int) best];
+          int cell = MazeGrid.edgeCell(edge);
+          int dir = MazeGrid.edgeDir(edge);
+          // two components may both have picked the edge between them
+          if (sets.union(cell, grid.neighbor(cell, dir))) {
+            grid.open(cell, dir);
+          }
+        }
+      }
+
+      int merged = 0;
+      for (int i = 0; i < rootCount; i++) {
+        if (sets.root(roots[i]) == roots[i]) {
+          roots[merged++] = roots[i];
+        }
+      }
+      rootCount = merged;
+
+      this.pool.invoke(new RelabelTask(sets, comp, 0, n));
+    }
+  }
+
+  // EFFECT: moves the edges each chunk kept to the front of live
+  // returns how many edges are left
+  int gather(int[] live, int liveCount, int[] kept) {
+    int count = 0;
+    for (int chunk = 0; chunk < kept.length; chunk++) {
+      int start = (int) ((long) liveCount * chunk / kept.length);
+      System.arraycopy(live, start, live, count, kept[chunk]);
+      count += kept[chunk];
+    }
+    return count;
+  }
+}
+
+// Scans a range of chunks of the live edges, compacting each chunk in place to
+// the edges that still join two components and offering each of them as the
+// cheapest edge of both components
+class CheapestEdgeTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  MazeGrid grid;
+  EdgeList candidates;
+  int[] comp;
+  AtomicLongArray cheapest;
+  int[] live;
+  int liveCount;
+  int chunks; // how many chunks the live edges are cut into
+  int[] kept; // how many edges each chunk kept
+  int from; // first chunk of the range
+  int to; // one past the last chunk of the range
+
+  CheapestEdgeTask(MazeGrid grid, EdgeList candidates, int[] comp, AtomicLongArray cheapest,
+      int[] live, int liveCount, int chunks, int[] kept, int from, int to) {
+    this.grid = grid;
+    this.candidates = candidates;
+    this.comp = comp;
+    this.cheapest = cheapest;
+    this.live = live;
+    this.liveCount = liveCount;
+    this.chunks = chunks;
+    this.kept = kept;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: scans every chunk in the range
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.scan(this.from);
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(
+          new CheapestEdgeTask(this.grid, this.candidates, this.comp, this.cheapest, this.live,
+              this.liveCount, this.chunks, this.kept, this.from, mid),
+          new CheapestEdgeTask(this.grid, this.candidates, this.comp, this.cheapest, this.live,
+              this.liveCount, this.chunks, this.kept, mid, this.to));
+    }
+  }
+
+  // EFFECT: compacts one chunk and offers its edges to their components
+  void scan(int chunk) {
+    int start = (int) ((long) this.liveCount * chunk / this.chunks);
+    int end = (int) ((long) this.liveCount * (chunk + 1) / this.chunks);
+    int count = start;
+    for (int i = start; i < end; i++) {
+      int position = this.live[i];
+      int edge = this.candidates.edge[position];
+      int cell = MazeGrid.edgeCell(edge);
+      int a = this.comp[cell];
+      int b = this.comp[this.grid.neighbor(cell, MazeGrid.edgeDir(edge))];
+      if (a != b) {
+        long key = (long) this.candidates.weight[position] << 32 | position;
+        this.offer(a, key);
+        this.offer(b, key);
+        this.live[count++] = position;
+      }
+    }
+    this.kept[chunk] = count - start;
+  }
+
+  // EFFECT: makes the key the component's cheapest edge if it's lower
+  void offer(int component, long key) {
+    long current = this.cheapest.get(component);
+    while (key < current && !this.cheapest.compareAndSet(component, current, key)) {
+      current = this.cheapest.get(component);
+    }
+  }
+}
+
+// Points a range of cells at the current root of their component
+class RelabelTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  static final int LEAF = 1 << 14; // cells relabeled without splitting further
+
+  UnionFind sets;
+  int[] comp;
+  int from;
+  int to;
+
+  RelabelTask(UnionFind sets, int[] comp, int from, int to) {
+    this.sets = sets;
+    this.comp = comp;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: relabels every cell in the range
+  protected void compute() {
+    if (this.to - this.from <= LEAF) {
+      for (int cell = this.from; cell < this.to; cell++) {
+        this.comp[cell] = this.sets.root(this.comp[cell]);
+      }
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new RelabelTask(this.sets, this.comp, this.from, mid),
+          new RelabelTask(this.sets, this.comp, mid, this.to));
+    }
+  }
+}
+
+// Runs a breadth first search one level at a time, expanding each level's
+// frontier across the workers of a ForkJoinPool: cells are claimed in a shared
+// bitset with compare-and-set, so each is added to the next frontier once
+class ParallelBfs {
+  static final int GRAIN = 1 << 10; // frontier cells a chunk should have at least
+
+  ForkJoinPool pool;
+  int expanded; // how many cells the latest search expanded
+
+  ParallelBfs(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  // returns the distance of every cell from the start, -1 if it can't be
+  // reached, stopping after the level that reaches the finish (-1 for none)
+  int[] distances(MazeGrid grid, int start, int finish) {
+    int n = grid.size();
+    int[] dist = new int[n];
+    Arrays.fill(dist, -1);
+    AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+
+    // each chunk of a level writes the cells it claims to its own buffer
+    int chunks = Math.max(1, this.pool.getParallelism() * 4);
+    int[][] next = new int[chunks][16];
+    int[] found = new int[chunks];
+
+    int[] frontier = new int[16];
+    frontier[0] = start;
+    int count = 1;
+    ParallelBfs.claim(visited, start);
+    dist[start] = 0;
+    this.expanded = 0;
+
+    for (int level = 1; count > 0 && (finish < 0 || dist[finish] < 0); level++) {
+      this.expanded += count;
+      int used = Math.max(1, Math.min(chunks, count / ParallelBfs.GRAIN));
+      FrontierTask task = new FrontierTask(grid, visited, dist, level, frontier, count, used,
+          next, found, 0, used);
+      if (used == 1) {
+        // too small a level to be worth handing to the pool
+        task.compute();
+      }
+      else {
+        this.pool.invoke(task);
+      }
+
+      int total = 0;
+      for (int chunk = 0; chunk < used; chunk++) {
+        total += found[chunk];
+      }
+      if (frontier.length < total) {
+        frontier = new int[Math.max(total, frontier.length * 2)];
+      }
+      count = 0;
+      for (int chunk = 0; chunk < used; chunk++) {
+        System.arraycopy(next[chunk], 0, frontier, count, found[chunk]);
+        count += found[chunk];
+      }
+    }
+    return dist;
+  }
+
+  // returns the cells of a shortest path from the start to the finish, stepping
+  // back from the finish to any neighbor one closer, empty if it wasn't reached
+  static int[] pathTo(MazeGrid grid, int[] dist, int finish) {
+    if (dist[finish] < 0) {
+      return new int[0];
+    }
+
+    int[] path = new int[dist[finish] + 1];
+    int[] neighbors = new int[4];
+    int cell = finish;
+    for (int i = path.length - 1; i > 0; i--) {
+      path[i] = cell;
+      int count = grid.openNeighbors(cell, neighbors);
+      for (int j = 0; j < count; j++) {
+        if (dist[neighbors[j]] == dist[cell] - 1) {
+          cell = neighbors[j];
+          break;
+        }
+      }
+    }
+    path[0] = cell;
+    return path;
+  }
+
+  // EFFECT: sets the cell's bit in the bitset
+  // returns true if this call set it, false if it was already set
+  static boolean claim(AtomicLongArray visited, int cell) {
+    int word = cell >>> 6;
+    long bit = 1L << cell;
+    long current = visited.get(word);
+    while ((current & bit) == 0) {
+      if (visited.compareAndSet(word, current, current | bit)) {
+        return true;
+      }
+      current = visited.get(word);
+    }
+    return false;
+  }
+}
+
+// Expands a range of chunks of a frontier, each chunk claiming the unvisited
+// neighbors of its cells into its own next-frontier buffer
+class FrontierTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  MazeGrid grid;
+  AtomicLongArray visited;
+  int[] dist;
+  int level; // distance of the cells this level reaches
+  int[] frontier;
+  int count; // how many cells of frontier are in this level
+  int chunks; // how many chunks the frontier is cut into
+  int[][] next; // each chunk's buffer of claimed cells, grown as needed
+  int[] found; // how many cells each chunk claimed
+  int from; // first chunk of the range
+  int to; // one past the last chunk of the range
+
+  FrontierTask(MazeGrid grid, AtomicLongArray visited, int[] dist, int level, int[] frontier,
+      int count, int chunks, int[][] next, int[] found, int from, int to) {
+    this.grid = grid;
+    this.visited = visited;
+    this.dist = dist;
+    this.level = level;
+    this.frontier = frontier;
+    this.count = count;
+    this.chunks = chunks;
+    this.next = next;
+    this.found = found;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: expands every chunk in the range
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.expand(this.from);
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(
+          new FrontierTask(this.grid, this.visited, this.dist, this.level, this.frontier,
+              this.count, this.chunks, this.next, this.found, this.from, mid),
+          new FrontierTask(this.grid, this.visited, this.dist, this.level, this.frontier,
+              this.count, this.chunks, this.next, this.found, mid, this.to));
+    }
+  }
+
+  // EFFECT: claims the unvisited neighbors of one chunk's cells
+  void expand(int chunk) {
+    int start = (int) ((long) this.count * chunk / this.chunks);
+    int end = (int) ((long) this.count * (chunk + 1) / this.chunks);
+    int[] buffer = this.next[chunk];
+    int[] neighbors = new int[4];
+    int claimed = 0;
+    for (int i = start; i < end; i++) {
+      int open = this.grid.openNeighbors(this.frontier[i], neighbors);
+      for (int j = 0; j < open; j++) {
+        if (ParallelBfs.claim(this.visited, neighbors[j])) {
+          // only the claiming chunk writes this cell's distance
+          this.dist[neighbors[j]] = this.level;
+          if (claimed == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          }
+          buffer[claimed++] = neighbors[j];
+        }
+      }
+    }
+    this.next[chunk] = buffer;
+    this.found[chunk] = claimed;
+  }
+}
+
+// Floods a maze 64 cells at a time: each row is packed into words with a bit
+// per cell, and a whole BFS level is found with shifts and masks over them
+class BitboardSolver {
+  MazeGrid grid;
+  // each row takes a power of two of words, so a word's row and column are shifts
+  int shift; // log2 of the words in each row
+  int words; // words in each row, the last ones padding if the row is narrower
+  // bit col of word row * words + col / 64 is set if that cell's wall is open
+  long[] east; // to the east, so a west step into a cell uses the cell's east bit
+  long[] south; // to the south, so a north step uses the row above's south bit
+
+  long[] visited; // cells reached so far
+  long[] frontier; // cells of the latest level, only meaningful in active words
+  long[] next; // cells of the level being found, only meaningful in candidate words
+  // a maze's frontier is thin, so only the words it's in are flooded
+  int[] active; // words the frontier has cells in
+  int activeCount;
+  int[] candidates; // words the next level has cells in
+  int[] wordStamp; // a word is a candidate if its stamp is this.stamp
+  int stamp;
+  int reached; // how many cells the latest search reached
+
+  BitboardSolver(MazeGrid grid) {
+    this.grid = grid;
+    this.shift = 32 - Integer.numberOfLeadingZeros((grid.cols + 63 >>> 6) - 1);
+    this.words = 1 << this.shift;
+    this.east = new long[grid.rows << this.shift];
+    this.south = new long[grid.rows << this.shift];
+    for (int cell = 0; cell < grid.size(); cell++) {
+      int word = (cell / grid.cols << this.shift) + (cell % grid.cols >>> 6);
+      long bit = 1L << (cell % grid.cols);
+      if (grid.isOpen(cell, MazeGrid.EAST)) {
+        this.east[word] |= bit;
+      }
+      if (grid.isOpen(cell, MazeGrid.SOUTH)) {
+        this.south[word] |= bit;
+      }
+    }
+
+    this.visited = new long[this.east.length];
+    this.frontier = new long[this.east.length];
+    this.next = new long[this.east.length];
+    this.active = new int[this.east.length];
+    this.candidates = new int[this.east.length];
+    this.wordStamp = new int[this.east.length];
+  }
+
+  // returns the distance of every cell from the start, -1 if it can't be
+  // reached, stopping after the level that reaches the finish (-1 for none)
+  int[] distances(int start, int finish) {
+    int[] dist = new int[this.grid.size()];
+    Arrays.fill(dist, -1);
+    Arrays.fill(this.visited, 0);
+
+    int word = (start / this.grid.cols << this.shift) + (start % this.grid.cols >>> 6);
+    this.frontier[word] = 1L << (start % this.grid.cols);
+    this.visited[word] = this.frontier[word];
+    this.active[0] = word;
+    this.activeCount = 1;
+    dist[start] = 0;
+    this.reached = 1;
+
+    for (int level = 1; this.activeCount > 0 && (finish < 0 || dist[finish] < 0); level++) {
+      this.flood(dist, level);
+    }
+    return dist;
+  }
+
+  // EFFECT: finds the cells one step from the frontier that haven't been
+  // reached, giving them the level as their distance, and makes them the frontier
+  void flood(int[] dist, int level) {
+    // each frontier word pushes its steps into the words they land in, so only
+    // words that gain cells are ever touched, and settled ones are never swept
+    this.stamp++;
+    int count = 0;
+    for (int a = 0; a < this.activeCount; a++) {
+      int i = this.active[a];
+      long here = this.frontier[i];
+      long open = here & this.east[i];
+      // east steps move a bit up, west steps move a bit down into a cell whose
+      // east wall is open
+      count = this.push(i, open << 1 | here >>> 1 & this.east[i], count);
+      if (open < 0) {
+        count = this.push(i + 1, 1L, count);
+      }
+      if ((here & 1) != 0 && (i & this.words - 1) != 0 && this.east[i - 1] < 0) {
+        count = this.push(i - 1, 1L << 63, count);
+      }
+      // south steps go to the row below, north steps to the row above
+      if (i + this.words < this.east.length) {
+        count = this.push(i + this.words, here & this.south[i], count);
+      }
+      if (i >= this.words) {
+        count = this.push(i - this.words, here & this.south[i - this.words], count);
+      }
+    }
+
+    for (int c = 0; c < count; c++) {
+      int i = this.candidates[c];
+      long fresh = this.next[i];
+      this.visited[i] |= fresh;
+      this.reached += Long.bitCount(fresh);
+      int first = (i >>> this.shift) * this.grid.cols + ((i & this.words - 1) << 6);
+      while (fresh != 0) {
+        dist[first + Long.numberOfTrailingZeros(fresh)] = level;
+        fresh &= fresh - 1;
+      }
+    }
+
+    long[] swap = this.frontier;
+    this.frontier = this.next;
+    this.next = swap;
+    int[] spare = this.active;
+    this.active = this.candidates;
+    this.candidates = spare;
+    this.activeCount = count;
+  }
+
+  // EFFECT: adds the cells that haven't been reached to the word's part of the
+  // next level, making it a candidate if it isn't one yet
+  // returns how many candidates there are now
+  int push(int i, long cells, int count) {
+    long fresh = cells & ~this.visited[i];
+    if (fresh == 0) {
+      return count;
+    }
+    if (this.wordStamp[i] != this.stamp) {
+      this.wordStamp[i] = this.stamp;
+      this.next[i] = fresh;
+      this.candidates[count++] = i;
+    }
+    else {
+      this.next[i] |= fresh;
+    }
+    return count;
+  }
+}
+
+// Carves a maze with a randomized depth-first search, backtracking with an
+// explicit stack of cells instead of recursion
+class BacktrackerGenerator implements MazeGenerator {
+
+  // EFFECT: walks from the top left cell into random unvisited neighbors,
+  // backing up whenever it gets stuck
+  public void generate(MazeGrid grid, Random rand) {
+    this.carve(grid, rand, 0, 0, grid.cols, grid.rows);
+  }
+
+  // EFFECT: carves a spanning tree of the given rectangle of cells, starting at
+  // its top left, without opening any wall on its border
+  void carve(MazeGrid grid, Random rand, int left, int top, int width, int height) {
+    int[] stack = new int[width * height];
+    int[] choices = new int[4];
+    int size = 0;
+    stack[size++] = grid.index(left, top);
+
+    while (size > 0) {
+      int current = stack[size - 1];
+      int col = current % grid.cols;
+      int row = current / grid.cols;
+      int count = 0;
+      for (int dir : MazeGrid.DIRECTIONS) {
+        // a cell is unvisited while all of its walls are still up
+        if (this.inside(dir, col, row, left, top, width, height)
+            && grid.cells[grid.neighbor(current, dir)] == 0) {
+          choices[count++] = dir;
+        }
+      }
+
+      if (count == 0) {
+        size--;
+      }
+      else {
+        int dir = choices[rand.nextInt(count)];
+        grid.open(current, dir);
+        stack[size++] = grid.neighbor(current, dir);
+      }
+    }
+  }
+
+  // does stepping in the given direction from the cell stay inside the rectangle?
+  boolean inside(int dir, int col, int row, int left, int top, int width, int height) {
+    if (dir == MazeGrid.NORTH) {
+      return row > top;
+    }
+    else if (dir == MazeGrid.SOUTH) {
+      return row < top + height - 1;
+    }
+    else if (dir == MazeGrid.EAST) {
+      return col < left + width - 1;
+    }
+    else {
+      return col > left;
+    }
+  }
+}
+
+// Carves a large maze in parallel: the grid is cut into square tiles, each
+// carved by its own fork/join task, then the tiles are stitched together along
+// a random spanning tree of the tiles, one opening per shared border
+// every tile draws from a Random seeded only by the maze's seed and the tile's
+// position, so the maze doesn't depend on how many threads carved it
+class TiledGenerator implements MazeGenerator {
+  int tileSize; // width and height of each tile, in cells
+  ForkJoinPool pool;
+
+  TiledGenerator(int tileSize) {
+    this(tileSize, ForkJoinPool.commonPool());
+  }
+
+  TiledGenerator(int tileSize, ForkJoinPool pool) {
+    this.tileSize = tileSize;
+    this.pool = pool;
+  }
+
+  // EFFECT: carves every tile in parallel, then stitches them together
+  public void generate(MazeGrid grid, Random rand) {
+    long seed = rand.nextLong();
+    MazeGrid tiles = new MazeGrid((grid.cols + this.tileSize - 1) / this.tileSize,
+        (grid.rows + this.tileSize - 1) / this.tileSize);
+
+    this.pool.invoke(new TileTask(this, grid, tiles, seed, 0, tiles.size()));
+
+    // a maze of tiles decides which borders get an opening
+    Random stitch = new Random(seed);
+    new BacktrackerGenerator().generate(tiles, stitch);
+    for (int tile = 0; tile < tiles.size(); tile++) {
+      if (tiles.isOpen(tile, MazeGrid.EAST)) {
+        int col = (tile % tiles.cols + 1) * this.tileSize - 1;
+        int row = this.along(stitch, tile / tiles.cols, grid.rows);
+        grid.open(grid.index(col, row), MazeGrid.EAST);
+      }
+      if (tiles.isOpen(tile, MazeGrid.SOUTH)) {
+        int col = this.along(stitch, tile % tiles.cols, grid.cols);
+        int row = (tile / tiles.cols + 1) * this.tileSize - 1;
+        grid.open(grid.index(col, row), MazeGrid.SOUTH);
+      }
+    }
+  }
+
+  // returns a random position along the given tile's side, which may be cut short
+  // by the edge of the grid
+  int along(Random rand, int tile, int length) {
+    int first = tile * this.tileSize;
+    return first + rand.nextInt(Math.min(this.tileSize, length - first));
+  }
+
+  // EFFECT: carves the tile at the given index with its own Random
+  void carveTile(MazeGrid grid, MazeGrid tiles, long seed, int tile) {
+    int left = tile % tiles.cols * this.tileSize;
+    int top = tile / tiles.cols * this.tileSize;
+    new BacktrackerGenerator().carve(grid,
+        new Random(seed + (tile + 1) * 0x9E3779B97F4A7C15L), left, top,
+        Math.min(this.tileSize, grid.cols - left), Math.min(this.tileSize, grid.rows - top));
+  }
+}
+
+// Carves a range of tiles, splitting it in half until it's down to one tile
+class TileTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  TiledGenerator generator;
+  MazeGrid grid;
+  MazeGrid tiles;
+  long seed;
+  int from; // first tile of the range
+  int to; // one past the last tile of the range
+
+  TileTask(TiledGenerator generator, MazeGrid grid, MazeGrid tiles, long seed, int from,
+      int to) {
+    this.generator = generator;
+    this.grid = grid;
+    this.tiles = tiles;
+    this.seed = seed;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: carves every tile in the range
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.generator.carveTile(this.grid, this.tiles, this.seed, this.from);
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new TileTask(this.generator, this.grid, this.tiles, this.seed, this.from, mid),
+          new TileTask(this.generator, this.grid, this.tiles, this.seed, mid, this.to));
+    }
+  }
+}
+
+// Carves a maze with randomized Prim's algorithm: the tree grows from the top
+// left cell along the lowest priority edge leaving it, with priorities drawn
+// as edges are reached and kept in a primitive heap
+class PrimGenerator implements MazeGenerator {
+
+  // EFFECT: grows the tree until it covers the grid
+  public void generate(MazeGrid grid, Random rand) {
+    boolean[] inTree = new boolean[grid.size()];
+    // each edge is pushed once, when the first of its cells joins the tree
+    LongHeap frontier = new LongHeap(grid.edgeCount());
+
+    this.join(grid, rand, inTree, frontier, 0);
+    while (!frontier.isEmpty()) {
+      int edge = (int) frontier.pop();
+      int cell = MazeGrid.edgeCell(edge);
+      int other = grid.neighbor(cell, MazeGrid.edgeDir(edge));
+
+      if (!inTree[cell] || !inTree[other]) {
+        grid.open(cell, MazeGrid.edgeDir(edge));
+        this.join(grid, rand, inTree, frontier, inTree[cell] ? other : cell);
+      }
+    }
+  }
+
+  // EFFECT: adds the cell to the tree and pushes its edges to cells outside of
+  // it with fresh random priorities
+  void join(MazeGrid grid, Random rand, boolean[] inTree, LongHeap frontier, int cell) {
+    inTree[cell] = true;
+    for (int dir : MazeGrid.DIRECTIONS) {
+      int next = grid.neighbor(cell, dir);
+      if (next >= 0 && !inTree[next]) {
+        // the priority sits in the high bits so the heap orders by it
+        long priority = rand.nextInt(Integer.MAX_VALUE);
+        frontier.push(priority << 32 | grid.edgeBetween(cell, next));
+      }
+    }
+  }
+}
+
+// Carves a maze with Wilson's algorithm: loop-erased random walks from each
+// cell outside the tree until they hit it, which picks uniformly among all
+// possible mazes
+class WilsonGenerator implements MazeGenerator {
+
+  // EFFECT: joins every cell to the tree, which starts as the top left cell
+  public void generate(MazeGrid grid, Random rand) {
+    boolean[] inTree = new boolean[grid.size()];
+    // the direction the latest walk left each cell in; revisiting a cell
+    // overwrites it, which erases the loop
+    byte[] exit = new byte[grid.size()];
+    inTree[0] = true;
+
+    for (int start = 1; start < grid.size(); start++) {
+      int current = start;
+      while (!inTree[current]) {
+        int dir = MazeGrid.DIRECTIONS[rand.nextInt(4)];
+        int next = grid.neighbor(current, dir);
+        if (next >= 0) {
+          exit[current] = (byte) dir;
+          current = next;
+        }
+      }
+
+      // carve the loop-erased walk into the tree
+      current = start;
+      while (!inTree[current]) {
+        inTree[current] = true;
+        grid.open(current, exit[current]);
+        current = grid.neighbor(current, exit[current]);
+      }
+    }
+  }
+}
+
+// Represents a consumer of maze rows, handed each row as soon as a streaming
+// generator has finished it
+interface RowSink {
+
+  // EFFECT: takes the passage bits (see MazeGrid) of every cell of the given row
+  // the array is reused for the next row, so copy anything worth keeping
+  void acceptRow(int row, byte[] cells);
+}
+
+// Collects streamed rows into a grid
+class GridRowSink implements RowSink {
+  MazeGrid grid;
+
+  GridRowSink(MazeGrid grid) {
+    this.grid = grid;
+  }
+
+  // EFFECT: copies the row into the grid
+  public void acceptRow(int row, byte[] cells) {
+    System.arraycopy(cells, 0, this.grid.cells, row * this.grid.cols, cells.length);
+  }
+}
+
+// Writes streamed rows to an output stream, one byte of passage bits per cell
+// in row-major order, the same layout as MazeGrid.cells
+class StreamRowSink implements RowSink {
+  OutputStream out;
+
+  StreamRowSink(OutputStream out) {
+    this.out = out;
+  }
+
+  // EFFECT: writes the row to the stream
+  public void acceptRow(int row, byte[] cells) {
+    try {
+      this.out.write(cells);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// Carves a maze one row at a time with Eller's algorithm, keeping only the
+// current row's sets in memory, so mazes of any height can be streamed
+class EllerGenerator implements MazeGenerator {
+
+  // EFFECT: carves the maze into the grid
+  public void generate(MazeGrid grid, Random rand) {
+    this.stream(grid.cols, grid.rows, rand, new GridRowSink(grid));
+  }
+
+  // EFFECT: carves a maze of the given size, handing each finished row to the sink
+  // in order from the top
+  void stream(int cols, int rows, Random rand, RowSink sink) {
+    byte[] current = new byte[cols]; // passage bits of the row being carved
+    byte[] below = new byte[cols]; // north passages already known for the next row
+    int[] set = new int[cols]; // set of each cell in the row, -1 if it has none yet
+    UnionFind sets = new UnionFind(cols); // merges sets, labeled 0 to cols - 1
+    int[] pick = new int[cols]; // a random cell of each set, to carry it down
+    int[] seen = new int[cols]; // how many cells of each set have been seen
+    boolean[] carried = new boolean[cols]; // does the set already reach down?
+    boolean[] used = new boolean[cols]; // is the label taken in the next row?
+    Arrays.fill(set, -1);
+
+    for (int row = 0; row < rows; row++) {
+      boolean last = row == rows - 1;
+
+      // give every cell that didn't come from above a set of its own, using the
+      // labels nobody holds
+      int free = 0;
+      for (int col = 0; col < cols; col++) {
+        if (set[col] == -1) {
+          while (used[free]) {
+            free++;
+          }
+          set[col] = free++;
+        }
+      }
+      for (int label = 0; label < cols; label++) {
+        sets.parent[label] = label;
+        sets.rank[label] = 0;
+        used[label] = false;
+      }
+
+      // randomly join neighbors from different sets; the last row joins them all
+      for (int col = 0; col + 1 < cols; col++) {
+        if ((last || rand.nextBoolean()) && sets.union(set[col], set[col + 1])) {
+          current[col] |= MazeGrid.EAST;
+          current[col + 1] |= MazeGrid.WEST;
+        }
+      }
+
+      Arrays.fill(below, (byte) 0);
+      if (!last) {
+        for (int col = 0; col < cols; col++) {
+          set[col] = sets.find(set[col]);
+          seen[set[col]] = 0;
+          carried[set[col]] = false;
+        }
+
+        // randomly carry cells down, remembering a random cell of each set
+        for (int col = 0; col < cols; col++) {
+          int label = set[col];
+          seen[label]++;
+          if (rand.nextInt(seen[label]) == 0) {
+            pick[label] = col;
+          }
+          if (rand.nextBoolean()) {
+            this.carry(current, below, carried, label, col);
+          }
+        }
+        // and make sure every set reaches the next row
+        for (int col = 0; col < cols; col++) {
+          if (!carried[set[col]]) {
+            this.carry(current, below, carried, set[col], pick[set[col]]);
+          }
+        }
+
+        // cells carried down keep their set, the rest start over
+        for (int col = 0; col < cols; col++) {
+          if ((below[col] & MazeGrid.NORTH) != 0) {
+            used[set[col]] = true;
+          }
+          else {
+            set[col] = -1;
+          }
+        }
+      }
+
+      sink.acceptRow(row, current);
+
+      byte[] done = current;
+      current = below;
+      below = done;
+    }
+  }
+
+  // EFFECT: opens a passage south from the cell, marking its set as carried down
+  void carry(byte[] current, byte[] below, boolean[] carried, int label, int col) {
+    current[col] |= MazeGrid.SOUTH;
+    below[col] |= MazeGrid.NORTH;
+    carried[label] = true;
+  }
+}
+
+// Represents a binary min-heap of longs in a primitive array
+class LongHeap {
+  long[] items;
+  int size;
+
+  LongHeap(int capacity) {
+    this.items = new long[Math.max(capacity, 1)];
+    this.size = 0;
+  }
+
+  // is this heap empty?
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // EFFECT: adds the item to the heap, growing it if it's full
+  void push(long item) {
+    if (this.size == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.size * 2);
+    }
+    int i = this.size++;
+    while (i > 0 && this.items[(i - 1) / 2] > item) {
+      this.items[i] = this.items[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.items[i] = item;
+  }
+
+  // returns the smallest item
+  // EFFECT: removes that item from the heap
+  long pop() {
+    long result = this.items[0];
+    long last = this.items[--this.size];
+    int i = 0;
+    while (2 * i + 1 < this.size) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.size && this.items[child + 1] < this.items[child]) {
+        child++;
+      }
+      if (this.items[child] >= last) {
+        break;
+      }
+      this.items[i] = this.items[child];
+      i = child;
+    }
+    this.items[i] = last;
+    return result;
+  }
+}
+
+// Represents one search of a grid from a start cell to a finish cell, advanced
+// a cell at a time; it keeps all of its own state, so searches don't interfere
+class GridSearch {
+  MazeGrid grid;
+  int start;
+  int finish;
+
+  IIntCollection worklist; // cells the search still needs to check
+  // a cell has been visited if its stamp is the search's epoch, so restarting
+  // clears every cell at once
+  byte[] seen;
+  byte epoch;
+  // cameFrom[cell] is the direction of the cell the search reached it from, to
+  // rebuild the path
+  byte[] cameFrom;
+  int[] neighbors = new int[4]; // scratch space for the open neighbors of a cell
+
+  int visited; // how many cells have been expanded
+  boolean found; // has the search reached the finish?
+  int last; // the cell the latest step expanded
+
+  GridSearch(MazeGrid grid) {
+    this.grid = grid;
+    this.seen = new byte[grid.size()];
+    this.epoch = 0;
+    this.cameFrom = new byte[grid.size()];
+    this.worklist = new IntQueue();
+  }
+
+  // EFFECT: starts a new search between the given cells, checking cells in the
+  // order the worklist gives them back
+  void restart(IIntCollection worklist, int start, int finish) {
+    this.nextEpoch();
+    this.worklist = worklist;
+    this.start = start;
+    this.finish = finish;
+    this.visited = 0;
+    this.found = false;
+    this.last = -1;
+    this.worklist.add(start);
+  }
+
+  // EFFECT: starts a new epoch, so no cell counts as visited
+  void nextEpoch() {
+    this.epoch++;
+    if (this.epoch == 0) {
+      // the stamps wrapped around, so old ones could look current
+      Arrays.fill(this.seen, (byte) 0);
+      this.epoch = 1;
+    }
+  }
+
+  // has the search reached the finish or run out of cells?
+  boolean isDone() {
+    return this.found || this.worklist.isEmpty();
+  }
+
+  // has the current search visited the cell?
+  boolean isSeen(int cell) {
+    return this.seen[cell] == this.epoch;
+  }
+
+  // returns the cell the search reached the given cell from
+  int cameFrom(int cell) {
+    return this.grid.neighbor(cell, this.cameFrom[cell]);
+  }
+
+  // EFFECT: records that the search reached the cell from the adjacent one
+  void reachedFrom(int cell, int from) {
+    this.cameFrom[cell] = (byte) this.grid.direction(cell, from);
+  }
+
+  // EFFECT: checks the next cell of the worklist: reaching the finish ends the
+  // search, and a cell not seen before is expanded into its unseen neighbors
+  // returns true if a cell was expanded, which is then this.last
+  boolean step() {
+    // As long as the worklist isn't empty...
+    if (this.isDone()) {
+      return false;
+    }
+
+    int cell = this.worklist.pop();
+    if (cell == this.finish) {
+      this.found = true;
+      return false; // Success!
+    }
+    else if (this.seen[cell] == this.epoch) {
+      // does nothing: we've already seen this one
+      return false;
+    }
+    else {
+      // add all the neighbors of next to the worklist for further processing
+      int count = this.grid.openNeighbors(cell, this.neighbors);
+      for (int i = 0; i < count; i++) {
+        if (this.seen[this.neighbors[i]] != this.epoch) {
+          this.reachedFrom(this.neighbors[i], cell);
+          this.worklist.add(this.neighbors[i]);
+        }
+      }
+      this.seen[cell] = this.epoch;
+      this.visited++;
+      this.last = cell;
+      return true;
+    }
+  }
+
+  // EFFECT: steps until the search is done
+  void run() {
+    while (!this.isDone()) {
+      this.step();
+    }
+  }
+
+  // returns the cells on the path the search took from the start to the given
+  // cell, in order, following cameFrom back without recursion
+  int[] pathTo(int cell) {
+    int length = 1;
+    for (int c = cell; c != this.start; c = this.cameFrom(c)) {
+      length++;
+    }
+
+    int[] result = new int[length];
+    for (int i = length - 1; i > 0; i--) {
+      result[i] = cell;
+      cell = this.cameFrom(cell);
+    }
+    result[0] = cell;
+    return result;
+  }
+}
+
+// Runs two breadth first searches, one from each end, taking turns until one
+// expands a cell the other has already expanded, and joins their paths there
+class BidirectionalSearch {
+  GridSearch forward; // searches from the start
+  GridSearch backward; // searches from the finish
+  boolean forwardTurn; // does the forward search step next?
+  boolean lastForward; // was the latest step taken by the forward search?
+  int meet; // the cell where the searches met, -1 until they do
+  int last; // the cell the latest step expanded
+
+  BidirectionalSearch(GridSearch forward, GridSearch backward) {
+    this.forward = forward;
+    this.backward = backward;
+    this.meet = -1;
+    this.last = -1;
+  }
+
+  // EFFECT: starts searching from both the start and the finish
+  void restart(int start, int finish) {
+    this.forward.restart(new IntQueue(), start, finish);
+    this.backward.restart(new IntQueue(), finish, start);
+    this.forwardTurn = true;
+    this.meet = -1;
+    this.last = -1;
+  }
+
+  // have the searches met, or has either run out of cells?
+  boolean isDone() {
+    return this.meet >= 0 || this.forward.isDone() || this.backward.isDone();
+  }
+
+  // returns how many cells the two searches have expanded between them
+  int visited() {
+    return this.forward.visited + this.backward.visited;
+  }
+
+  // EFFECT: steps whichever search's turn it is, noting where they meet
+  // returns true if a cell was expanded, which is then this.last
+  boolean step() {
+    if (this.isDone()) {
+      return false;
+    }
+
+    GridSearch side = this.forwardTurn ? this.forward : this.backward;
+    GridSearch other = this.forwardTurn ? this.backward : this.forward;
+    this.lastForward = this.forwardTurn;
+    this.forwardTurn = !this.forwardTurn;
+
+    boolean expanded = side.step();
+    if (side.found) {
+      // reached the other end, which the other search started from
+      this.meet = side.finish;
+    }
+    else if (expanded && other.isSeen(side.last)) {
+      this.meet = side.last;
+    }
+
+    if (expanded) {
+      this.last = side.last;
+    }
+    return expanded;
+  }
+
+  // EFFECT: steps until the searches meet or run out of cells
+  void run() {
+    while (!this.isDone()) {
+      this.step();
+    }
+  }
+
+  // returns the cells from the start to the finish through the meeting cell,
+  // empty if the searches never met
+  int[] path() {
+    if (this.meet < 0) {
+      return new int[0];
+    }
+
+    int[] head = this.forward.pathTo(this.meet);
+    int[] tail = this.backward.pathTo(this.meet);
+    int[] result = Arrays.copyOf(head, head.length + tail.length - 1);
+    // the backward path runs from the finish, so add it reversed without the meet
+    for (int i = 0; i < tail.length - 1; i++) {
+      result[head.length + i] = tail[tail.length - 2 - i];
+    }
+    return result;
+  }
+}
+
+// Runs a search to completion on its own thread, publishing the cells it
+// expands so another thread can draw them while it runs
+class Racer implements Runnable {
+  GridSearch search; // only touched by the racing thread
+  int[] order; // cells in the order they were expanded
+  volatile int count; // how many cells of order are published
+  volatile boolean done; // has the search finished, or been cancelled?
+  volatile boolean cancelled;
+  Semaphore steps; // cells it may expand, handed out each tick, or null to run freely
+  long nanos; // time spent searching, not waiting for steps, published by done
+  int[] path; // cells from start to finish, published by done
+
+  Racer(MazeGrid grid, IIntCollection worklist, int start, int finish) {
+    this.search = new GridSearch(grid);
+    this.search.restart(worklist, start, finish);
+    this.order = new int[grid.size()];
+    this.path = new int[0];
+  }
+
+  // EFFECT: runs the search, publishing each expanded cell
+  public void run() {
+    while (!this.search.isDone() && !this.cancelled) {
+      int allowed = this.await();
+      long begin = System.nanoTime();
+      int taken = 0;
+      while (taken < allowed && !this.search.isDone() && !this.cancelled) {
+        if (this.search.step()) {
+          this.order[this.count] = this.search.last;
+          // the volatile write publishes the cell written before it
+          this.count = this.count + 1;
+          taken++;
+        }
+      }
+      this.nanos += System.nanoTime() - begin;
+    }
+    if (this.search.found) {
+      this.path = this.search.pathTo(this.search.finish);
+    }
+    this.done = true;
+  }
+
+  // returns how many cells the search may expand now, waiting for at least
+  // one if it's paced, or 0 if it was interrupted while waiting
+  int await() {
+    if (this.steps == null) {
+      return Integer.MAX_VALUE;
+    }
+    try {
+      this.steps.acquire();
+      return 1 + this.steps.drainPermits();
+    }
+    catch (InterruptedException e) {
+      return 0;
+    }
+  }
+}
+
+// Races a breadth first and a depth first search on separate threads, each
+// with its own search state over a grid neither changes
+class SearchRace {
+  Racer bfs;
+  Racer dfs;
+  Thread[] threads;
+
+  SearchRace(MazeGrid grid, int start, int finish) {
+    this.bfs = new Racer(grid, new IntQueue(), start, finish);
+    this.dfs = new Racer(grid, new IntStack(), start, finish);
+  }
+
+  // EFFECT: makes both searches wait for allow before expanding cells,
+  // so the race can be shown a tick at a time
+  void pace() {
+    this.bfs.steps = new Semaphore(0);
+    this.dfs.steps = new Semaphore(0);
+  }
+
+  // EFFECT: lets each paced search expand the given number of cells more
+  void allow(int steps) {
+    this.bfs.steps.release(steps);
+    this.dfs.steps.release(steps);
+  }
+
+  // EFFECT: starts both searches on their own threads
+  void start() {
+    this.threads = new Thread[] { new Thread(this.bfs, "bfs-racer"),
+        new Thread(this.dfs, "dfs-racer") };
+    for (Thread thread : this.threads) {
+      // a race left running shouldn't keep the program open
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  // have both searches finished?
+  boolean isDone() {
+    return this.bfs.done && this.dfs.done;
+  }
+
+  // EFFECT: waits for both searches to finish
+  void join() {
+    try {
+      for (Thread thread : this.threads) {
+        thread.join();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // EFFECT: asks both searches to stop early, waking them if they're waiting
+  void cancel() {
+    this.bfs.cancelled = true;
+    this.dfs.cancelled = true;
+    if (this.threads != null) {
+      for (Thread thread : this.threads) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  // returns the name of the search that spent less wall-clock time searching
+  String fasterByTime() {
+    return this.bfs.nanos <= this.dfs.nanos ? "BFS" : "DFS";
+  }
+
+  // returns the name of the search that expanded fewer cells
+  String fewerVisited() {
+    return this.bfs.count <= this.dfs.count ? "BFS" : "DFS";
+  }
+}
+
+// Represents the outcome of a search run to completion
+class SolveResult {
+  int[] path; // cells from start to finish, empty if the finish can't be reached
+  int visited; // how many cells were expanded, like Maze.bfsScore and dfsScore
+  long nanos; // how long the search took
+
+  SolveResult(int[] path, int visited, long nanos) {
+    this.path = path;
+    this.visited = visited;
+    this.nanos = nanos;
+  }
+}
+
+// Solves mazes without a World: runs a search to completion in a tight loop,
+// reusing its arrays from one search to the next
+class MazeSolver {
+  GridSearch search;
+  BidirectionalSearch meeting; // made the first time it's needed
+  BitboardSolver bitboard; // made the first time it's needed
+  int start;
+  int finish;
+
+  MazeSolver(MazeGrid grid, int start, int finish) {
+    this.search = new GridSearch(grid);
+    this.start = start;
+    this.finish = finish;
+  }
+
+  MazeSolver(Maze maze) {
+    this(maze.grid, maze.start, maze.finish);
+  }
+
+  // returns the result of a breadth first search
+  SolveResult bfs() {
+    return this.solve(new IntQueue());
   }
-}
 
-class Queue<T> implements ICollection<T> {
-  ArrayDeque<T> contents;
+  // returns the result of a depth first search
+  SolveResult dfs() {
+    return this.solve(new IntStack());
+  }
 
-  Queue() {
-    this.contents = new ArrayDeque<T>();
+  // returns the result of A*, with unit steps and the Manhattan distance
+  SolveResult aStar() {
+    return this.solve(PriorityWorklist.aStar(this.search));
   }
 
-  // check if the contents ArrayDeque<T> is empty
-  public boolean isEmpty() {
-    return this.contents.isEmpty();
+  // returns the result of Dijkstra's algorithm, stepping at the given costs
+  SolveResult dijkstra(EdgeWeights weights) {
+    return this.solve(PriorityWorklist.dijkstra(this.search, weights));
   }
 
-  // EFFECT: removes the first item of the ArrayDeque<T>
-  // returns the first item of the collection
-  public T pop() {
-    return this.contents.pop();
+  // returns the result of a breadth first search from both ends at once
+  SolveResult bidirectional() {
+    if (this.meeting == null) {
+      this.meeting = new BidirectionalSearch(this.search, new GridSearch(this.search.grid));
+    }
+
+    long begin = System.nanoTime();
+    this.meeting.restart(this.start, this.finish);
+    this.meeting.run();
+    long nanos = System.nanoTime() - begin;
+    return new SolveResult(this.meeting.path(), this.meeting.visited(), nanos);
   }
 
-  // EFFECT: adds the item to the Front of the ArrayDeque<T>
-  public void add(T item) {
-    this.contents.addLast(item); // NOTE: Different from Stack!
+  // returns the result of a breadth first search expanding each level across
+  // the pool's workers
+  SolveResult parallelBfs(ForkJoinPool pool) {
+    ParallelBfs bfs = new ParallelBfs(pool);
+    long begin = System.nanoTime();
+    int[] dist = bfs.distances(this.search.grid, this.start, this.finish);
+    int[] path = ParallelBfs.pathTo(this.search.grid, dist, this.finish);
+    long nanos = System.nanoTime() - begin;
+    return new SolveResult(path, bfs.expanded, nanos);
   }
-}
 
-class Vertex {
+  // returns the result of a breadth first search flooding whole words of
+  // cells at once, where visited is how many cells it reached
+  SolveResult bitboard() {
+    if (this.bitboard == null) {
+      this.bitboard = new BitboardSolver(this.search.grid);
+    }
 
-  int col;
-  int row;
+    long begin = System.nanoTime();
+    int[] dist = this.bitboard.distances(this.start, this.finish);
+    int[] path = ParallelBfs.pathTo(this.search.grid, dist, this.finish);
+    long nanos = System.nanoTime() - begin;
+    return new SolveResult(path, this.bitboard.reached, nanos);
+  }
 
-  ArrayList<Edge> edges; // list of the Vertex's edges
+  // returns the result of searching in the order the worklist gives cells back
+  SolveResult solve(IIntCollection worklist) {
+    long begin = System.nanoTime();
+    this.search.restart(worklist, this.start, this.finish);
+    this.search.run();
+    long nanos = System.nanoTime() - begin;
 
-  // does this vertex have an edge in this direction?
-  boolean north;
-  boolean south;
-  boolean east;
-  boolean west;
+    int[] path = this.search.found ? this.search.pathTo(this.finish) : new int[0];
+    return new SolveResult(path, this.search.visited, nanos);
+  }
+}
 
-  // color
-  Color c;
+// An image drawn by writing ARGB pixels straight into the int array behind a
+// BufferedImage, remembering the rectangle touched since it was last copied out
+class RasterLayer {
+  int width;
+  int height;
+  BufferedImage image;
+  int[] pixels; // the image's pixels, row by row
+  // the touched rectangle, empty when left >= right
+  int left;
+  int top;
+  int right;
+  int bottom;
+
+  RasterLayer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+    this.left = this.width;
+    this.top = this.height;
+  }
 
-  // for bfs and dfs
-  boolean alreadySeen; // has the Vertex been visited by the algorithm
-  boolean inFinalPath; // is this Vertex in the solution path
+  // EFFECT: colors a rectangle of the image, clipped to its edges
+  void fill(int x, int y, int w, int h, Color c) {
+    int x0 = Math.max(x, 0);
+    int y0 = Math.max(y, 0);
+    int x1 = Math.min(x + w, this.width);
+    int y1 = Math.min(y + h, this.height);
+    if (x0 >= x1 || y0 >= y1) {
+      return;
+    }
 
-  Vertex(int col, int row) {
-    this.col = col;
-    this.row = row;
-    this.edges = new ArrayList<Edge>();
-    this.north = false;
-    this.south = false;
-    this.east = false;
-    this.west = false;
-    this.alreadySeen = false;
-    this.inFinalPath = false;
-    this.c = new Color(210, 210, 210);
+    int argb = c.getRGB();
+    for (int py = y0; py < y1; py++) {
+      Arrays.fill(this.pixels, py * this.width + x0, py * this.width + x1, argb);
+    }
+    this.left = Math.min(this.left, x0);
+    this.top = Math.min(this.top, y0);
+    this.right = Math.max(this.right, x1);
+    this.bottom = Math.max(this.bottom, y1);
   }
 
-  // does this vertex equal the given object
-  // for the purposes of the maze, we only care about the coordinates of the
-  // vertex
-  @Override
-  public boolean equals(Object o) {
-    if (!(o instanceof Vertex)) {
-      return false;
+  // EFFECT: copies the touched rectangle into the image, which must be the same
+  // size, and forgets it
+  void copyTo(ComputedPixelImage target) {
+    Color color = null;
+    for (int py = this.top; py < this.bottom; py++) {
+      for (int px = this.left; px < this.right; px++) {
+        int argb = this.pixels[py * this.width + px];
+        // cells are filled in runs of one color, so reuse it while it lasts
+        if (color == null || color.getRGB() != argb) {
+          color = new Color(argb, true);
+        }
+        target.setPixel(px, py, color);
+      }
     }
-    else {
-      Vertex v = (Vertex) o;
-      return v.row == this.row && v.col == this.col;
+    this.left = this.width;
+    this.top = this.height;
+    this.right = 0;
+    this.bottom = 0;
+  }
+}
+
+// Writes a maze, the cells a search visited and its final path as a PNG, a band
+// of pixel rows at a time: the tiles of each band are rasterized concurrently,
+// then the band is compressed onto the stream, so only one band is ever in memory
+class PngExporter {
+  static final int BAND = 64; // pixel rows rasterized and compressed together
+  static final int TILE = 256; // pixel columns each task rasterizes
+  static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+  static final int WALL = Color.darkGray.getRGB();
+  static final int FLOOR = new Color(210, 210, 210).getRGB();
+  static final int VISITED = Color.pink.getRGB();
+
+  ForkJoinPool pool;
+  int cellSize;
+
+  // the export in progress
+  MazeGrid grid;
+  long[] visited; // bit cell % 64 of word cell / 64 is set if the cell was visited
+  long[] path; // the same for the cells of the final path
+  int width;
+  int height;
+  int[] hues; // the final path's palette, as Maze draws it
+
+  OutputStream out;
+  CRC32 crc = new CRC32();
+  byte[] header = new byte[8]; // a chunk's length and type
+
+  PngExporter(ForkJoinPool pool, int cellSize) {
+    // a cell's top row and left column are its walls, so a cell one pixel wide
+    // would have no floor left to show its passages
+    if (cellSize < 2) {
+      throw new IllegalArgumentException("Cells must be at least 2 pixels wide");
+    }
+    this.pool = pool;
+    this.cellSize = cellSize;
+    this.hues = new int[Maze.HUES];
+    for (int i = 0; i < Maze.HUES; i++) {
+      this.hues[i] = Color.getHSBColor((float) i / (Maze.HUES - 1) * 67 / 72, 1, 1).getRGB();
     }
   }
 
-  // hashcode override
-  @Override
-  public int hashCode() {
-    return 10000 * this.col + this.row;
+  // returns a bitset of the given cells, for a grid of the given size
+  static long[] bitset(int size, int[] cells) {
+    long[] bits = new long[(size + 63) >>> 6];
+    for (int cell : cells) {
+      bits[cell >>> 6] |= 1L << cell;
+    }
+    return bits;
   }
 
-  // draws a Vertex on a given world scene
-  WorldScene place(WorldScene scene, int maxCols, int maxRows, boolean searching) {
-    int s = Maze.SIZE;
-    this.c = this.getColor(maxCols - 1, maxRows - 1);
+  // EFFECT: writes the maze to the file as a PNG
+  void export(MazeGrid grid, long[] visited, int[] path, String file) {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+      this.export(grid, visited, path, out);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-    WorldImage rect = new RectangleImage(s, s, "solid", this.c).movePinhole(-s / 2, -s / 2);
-    scene.placeImageXY(rect, this.col * s, this.row * s);
+  // EFFECT: writes the maze to the stream as a PNG
+  void export(MazeGrid grid, long[] visited, int[] path, OutputStream out) {
+    this.grid = grid;
+    this.visited = visited;
+    this.path = PngExporter.bitset(grid.size(), path);
+    this.width = grid.cols * this.cellSize + 1;
+    this.height = grid.rows * this.cellSize + 1;
+    this.out = out;
+
+    int stride = 1 + this.width * 3; // a filter byte, then each pixel's red, green, blue
+    byte[] band = new byte[Math.min(PngExporter.BAND, this.height) * stride];
+    byte[] compressed = new byte[1 << 16];
+    Deflater deflater = new Deflater();
+    try {
+      out.write(PngExporter.SIGNATURE);
+      byte[] ihdr = new byte[13];
+      PngExporter.putInt(ihdr, 0, this.width);
+      PngExporter.putInt(ihdr, 4, this.height);
+      ihdr[8] = 8; // bits per sample
+      ihdr[9] = 2; // truecolor, no palette or alpha
+      this.chunk("IHDR", ihdr, 13);
+
+      for (int top = 0; top < this.height; top += PngExporter.BAND) {
+        int rows = Math.min(PngExporter.BAND, this.height - top);
+        this.pool.invoke(new RasterTileTask(this, band, stride, top, rows, 0, this.width));
+        deflater.setInput(band, 0, rows * stride);
+        while (!deflater.needsInput()) {
+          this.deflate(deflater, compressed);
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        this.deflate(deflater, compressed);
+      }
+      this.chunk("IEND", compressed, 0);
+      out.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    finally {
+      deflater.end();
+      this.out = null;
+    }
+  }
 
-    if (!this.c.equals(new Color(210, 210, 210)) && searching) {
-      this.c = Color.pink;
+  // EFFECT: writes whatever the deflater has ready as an IDAT chunk
+  void deflate(Deflater deflater, byte[] buffer) throws IOException {
+    int n = deflater.deflate(buffer);
+    if (n > 0) {
+      this.chunk("IDAT", buffer, n);
     }
+  }
 
-    return scene;
+  // EFFECT: writes a chunk of the given type holding the first length bytes of data
+  void chunk(String type, byte[] data, int length) throws IOException {
+    PngExporter.putInt(this.header, 0, length);
+    for (int i = 0; i < 4; i++) {
+      this.header[4 + i] = (byte) type.charAt(i);
+    }
+    this.crc.reset();
+    this.crc.update(this.header, 4, 4);
+    this.crc.update(data, 0, length);
+    this.out.write(this.header);
+    this.out.write(data, 0, length);
+    byte[] sum = new byte[4];
+    PngExporter.putInt(sum, 0, (int) this.crc.getValue());
+    this.out.write(sum);
   }
 
-  // returns the color of the Vertex
-  Color getColor(int maxCols, int maxRows) {
+  // EFFECT: writes the int into the bytes at the offset, most significant byte first
+  static void putInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+  }
 
-    if ((this.row == 0 && this.col == 0) || (this.row == maxRows && this.col == maxCols)) {
-      return Color.pink;
+  // returns the color of a cell's floor: a hue of the path, pink if it was
+  // visited, or gray
+  int floor(int cell) {
+    if ((this.path[cell >>> 6] & 1L << cell) != 0) {
+      int col = cell % this.grid.cols;
+      int row = cell / this.grid.cols;
+      double hue = Math.hypot(col, row) / Math.hypot(this.grid.cols - 1, this.grid.rows - 1);
+      return this.hues[Math.max(0, Math.min(Maze.HUES - 1,
+          (int) Math.round(hue * (Maze.HUES - 1))))];
     }
+    else if (this.visited != null && (this.visited[cell >>> 6] & 1L << cell) != 0) {
+      return PngExporter.VISITED;
+    }
+    else {
+      return PngExporter.FLOOR;
+    }
+  }
 
-    if (this.alreadySeen) {
-      return Color.pink;
+  // EFFECT: writes the scanlines of a band's pixel rows, between the given
+  // pixel columns, into the band
+  // each cell's top row and left column are its north and west walls, and the
+  // last row and column are the maze's border
+  void rasterize(byte[] band, int stride, int top, int rows, int from, int to) {
+    int cs = this.cellSize;
+    for (int r = 0; r < rows; r++) {
+      int y = top + r;
+      int at = r * stride + 1 + from * 3;
+      band[r * stride] = 0; // no filter
+      if (y == this.height - 1) {
+        for (int x = from; x < to; x++) {
+          at = PngExporter.putRgb(band, at, PngExporter.WALL);
+        }
+        continue;
+      }
+
+      int row = y / cs;
+      int dy = y % cs;
+      // step along the row cell by cell, so the walls and floor are looked up once each
+      int x = from;
+      while (x < to) {
+        if (x == this.width - 1) {
+          at = PngExporter.putRgb(band, at, PngExporter.WALL);
+          x++;
+          continue;
+        }
+        int col = x / cs;
+        int cell = this.grid.index(col, row);
+        int end = Math.min((col + 1) * cs, to);
+        int floor = this.floor(cell);
+        int wall = dy == 0 && !this.grid.isOpen(cell, MazeGrid.NORTH) ? PngExporter.WALL : floor;
+        if (x == col * cs) {
+          boolean closed = dy == 0 || !this.grid.isOpen(cell, MazeGrid.WEST);
+          at = PngExporter.putRgb(band, at, closed ? PngExporter.WALL : wall);
+          x++;
+        }
+        for (; x < end; x++) {
+          at = PngExporter.putRgb(band, at, wall);
+        }
+      }
     }
+  }
 
-    return new Color(210, 210, 210);
+  // EFFECT: writes the color's red, green and blue into the bytes at the offset
+  // returns the offset just past them
+  static int putRgb(byte[] bytes, int offset, int rgb) {
+    bytes[offset] = (byte) (rgb >>> 16);
+    bytes[offset + 1] = (byte) (rgb >>> 8);
+    bytes[offset + 2] = (byte) rgb;
+    return offset + 3;
   }
 }
 
-class Edge {
-
-  int weight;
-
-  Vertex src;
-  Vertex dest;
+// Rasterizes a range of pixel columns of a band, splitting it into tiles
+// rasterized concurrently
+class RasterTileTask extends RecursiveAction {
+  static final long serialVersionUID = 1L;
+
+  PngExporter exporter;
+  byte[] band;
+  int stride; // bytes in each scanline of the band
+  int top; // first pixel row of the band
+  int rows; // pixel rows in the band
+  int from; // first pixel column of the range
+  int to; // one past the last pixel column of the range
+
+  RasterTileTask(PngExporter exporter, byte[] band, int stride, int top, int rows, int from,
+      int to) {
+    this.exporter = exporter;
+    this.band = band;
+    this.stride = stride;
+    this.top = top;
+    this.rows = rows;
+    this.from = from;
+    this.to = to;
+  }
 
-  Edge(int weight, Vertex from, Vertex to) {
-    this.weight = weight;
-    this.src = from;
-    this.dest = to;
+  // EFFECT: rasterizes the range, a tile at a time
+  protected void compute() {
+    if (this.to - this.from <= PngExporter.TILE) {
+      this.exporter.rasterize(this.band, this.stride, this.top, this.rows, this.from, this.to);
+    }
+    else {
+      // split on a tile boundary, so every tile but the last is full
+      int tiles = (this.to - this.from + PngExporter.TILE - 1) / PngExporter.TILE;
+      int mid = this.from + tiles / 2 * PngExporter.TILE;
+      invokeAll(
+          new RasterTileTask(this.exporter, this.band, this.stride, this.top, this.rows,
+              this.from, mid),
+          new RasterTileTask(this.exporter, this.band, this.stride, this.top, this.rows,
+              mid, this.to));
+    }
   }
 }
 
 class Maze extends World {
-  static int SIZE = 25; /* Maze.SIZE is 30 unless large maze (> 40x20) is provided */
+  static final int SIZE = 25; // pixels each cell starts at, unless the maze is large
+  static final int LARGE_SIZE = 10; // for mazes larger than 40x20
+  static final int CELLS_PER_STEP = 2000; // each tick searches one cell per this many
+  static final long FRAME_BUDGET = 8000000; // nanoseconds of search per tick in budget mode
 
   int cols;
   int rows;
 
-  ArrayList<ArrayList<Vertex>> vertices;
+  MazeGrid grid; // walls of the maze, searched and drawn straight from its cells
+
+  // how the maze is carved, Kruskal's algorithm unless another is given
+  KruskalGenerator kruskal = new KruskalGenerator();
+  MazeGenerator generator = this.kruskal;
 
   // Helps generate random mazes
   Random rand = new Random();
   long seed = rand.nextLong();
 
-  // Start and Finish Vertices
-  Vertex start;
-  Vertex finish;
+  // Start and Finish cells, indexed by row * cols + col
+  int start;
+  int finish;
 
   // for search
   boolean searching; // is the algorithm currently running or "searching"
-  ICollection<Vertex> worklist; // list of Vertices the algorithm needs to check
-  ArrayDeque<Vertex> alreadySeen; // list of Vertices that have been visited
-
-  // new Hashmap to connect Vertices for the final path displayed
-  HashMap<Vertex, Vertex> searchingPath = new HashMap<Vertex, Vertex>();
-  // list of all Vertices on the final path determined
-  ArrayList<Vertex> finalPath = new ArrayList<Vertex>();
-
-  WorldScene scene = new WorldScene(2000, 1600); // generates a new world scene
-
-  // keep score of each algorithm and how many Vertices they visit
-  boolean bfs; // helper boolean to determine which algorithm is being used
+  GridSearch search; // the search being animated, with its worklist and visited cells
+  BidirectionalSearch meeting; // searches from both ends, forward with this.search
+  SearchRace race; // BFS and DFS searching at once on other threads, if racing
+  int bfsDrawn; // how many cells from each racer have been drawn
+  int dfsDrawn;
+  boolean logVisits = true; // should visited cells also be logged in alreadySeen?
+
+  // how fast the search animates
+  int stepsPerTick; // cells searched each tick, one for mazes that fit the window
+  long frameBudget; // nanoseconds to search for each tick instead, if not 0
+  IntStack alreadySeen; // log of the cells visited, most recent first
+
+  // what the searches have left on each cell, drawn over its floor
+  static final int SEEN = 1; // visited by a search
+  static final int FROM_FINISH = 2; // visited by a search from the finish
+  static final int ON_PATH = 4; // on the final path
+  byte[] marks;
+
+  // cells on the final path determined, from start to finish
+  int[] path = new int[0];
+
+  WorldScene scene = new WorldScene(2000, 1600); // the latest frame
+  int sceneWidth = 2000; // size of the scene made for each frame
+  int sceneHeight = 1600;
+
+  // the maze is drawn into a raster the size of the view, and each frame shows
+  // it as one image: only the cells in the view are drawn, and after that only
+  // the cells a search touches are written and copied to the frame
+  static final int MAX_VIEW_WIDTH = 1200; // largest view, in pixels
+  static final int MAX_VIEW_HEIGHT = 800;
+  static final int DETAIL_SIZE = 8; // smaller cells are drawn as one block each
+  static final int MAX_CELL_SIZE = 64;
+  int cellSize; // pixels each cell takes at the current zoom
+  // zoomed out past a pixel per cell, each pixel stands for a square of cells
+  int blockSize = 1; // cells along each side of that square
+  int panelSize; // cell size the score panel is laid out for
+  int viewX; // pixel of the whole maze at the top left of the view
+  int viewY;
+  int viewWidth;
+  int viewHeight;
+  RasterLayer raster;
+  ComputedPixelImage frame; // the raster as javalib draws it
+  byte[] raced; // which racers have reached each cell, 1 for BFS and 2 for DFS
+  IntQueue dirty; // cells whose drawing changed since the last frame
+
+  // the score panel beside the view, in rows that fit the window
+  static final int PANEL_ROWS = 7; // the five scores, the winner and the race's time
+  int panelTop; // pixel the score panel's first row starts at
+  int rowHeight; // pixels each row of the panel takes, which a label fills
+
+  // colors and images drawn again and again, made once
+  static final int HUES = 256; // colors in the final path's palette
+  Color[] palette; // hues of the final path from the start to the finish
+  WorldImage scoreBackground;
+  WorldImage[] scoreImages = new WorldImage[5]; // text of each label
+  int[] shownScores = new int[5]; // the score each label's text shows, -1 if none
+
+  // keep score of each algorithm and how many cells they visit
+  String algorithm; // key of the algorithm being used
   int bfsScore; // Active score of BFS search
   int dfsScore; // Active score of DFS search
+  int aStarScore; // Active score of A* search
+  int dijkstraScore; // Active score of Dijkstra search
+  int meetingScore; // Active score of bidirectional BFS search
+  long bfsNanos; // how long each search took in the latest race, 0 if none
+  long dfsNanos;
 
   Maze(int cols, int rows) {
-    if (cols > 40 || rows > 20) {
-      Maze.SIZE = 10;
-      this.scene = new WorldScene(this.cols * Maze.SIZE + 400, this.rows * Maze.SIZE + 2);
-    }
+    this.layout(cols, rows);
 
     this.cols = cols;
     this.rows = rows;
-    this.vertices = new ArrayList<ArrayList<Vertex>>();
-    this.colored = new ArrayList<Vertex>();
-    this.alreadySeen = new ArrayDeque<Vertex>();
+    this.dirty = new IntQueue();
+    this.alreadySeen = new IntStack();
     this.rand.setSeed(this.seed);
+    this.stepsPerTick = Math.max(1, cols * rows / Maze.CELLS_PER_STEP);
     this.constructGraph();
-    this.start = this.vertices.get(0).get(0);
-    this.finish = this.vertices.get(rows - 1).get(cols - 1);
+    this.start = 0;
+    this.finish = cols * rows - 1;
     this.searching = false;
     this.drawInitialMaze();
   }
 
   Maze(int cols, int rows, int seed) {
-    if (cols > 40 || rows > 20) {
-      Maze.SIZE = 10;
-      this.scene = new WorldScene(this.cols * Maze.SIZE + 400, this.rows * Maze.SIZE + 2);
-    }
+    this(cols, rows, seed, new KruskalGenerator());
+  }
+
+  Maze(int cols, int rows, int seed, MazeGenerator generator) {
+    this.layout(cols, rows);
     this.cols = cols;
     this.rows = rows;
+    this.seed = seed;
     this.rand.setSeed(seed);
-    this.vertices = new ArrayList<ArrayList<Vertex>>();
-    this.colored = new ArrayList<Vertex>();
-    this.alreadySeen = new ArrayDeque<Vertex>();
+    this.generator = generator;
+    if (generator instanceof KruskalGenerator) {
+      this.kruskal = (KruskalGenerator) generator;
+    }
+    this.dirty = new IntQueue();
+    this.alreadySeen = new IntStack();
+    this.stepsPerTick = Math.max(1, cols * rows / Maze.CELLS_PER_STEP);
     this.constructGraph();
-    this.start = this.vertices.get(0).get(0);
-    this.finish = this.vertices.get(rows - 1).get(cols - 1);
+    this.start = 0;
+    this.finish = cols * rows - 1;
     this.searching = false;
     this.drawInitialMaze();
   }
 
   // generates the maze
   void constructGraph() {
-    this.createArray();
-    this.assignEdges();
-    this.kruskals();
-    this.setWalls();
+    this.grid = new MazeGrid(this.cols, this.rows);
+    this.search = new GridSearch(this.grid);
+    this.marks = new byte[this.grid.size()];
+    this.meeting = null;
+    this.generator.generate(this.grid, this.rand);
   }
 
-  // creates an array with all the vertices
-  void createArray() {
-    for (int y = 0; y < this.rows; y++) {
-      this.vertices.add(new ArrayList<Vertex>());
-      for (int x = 0; x < this.cols; x++) {
-        Vertex v = new Vertex(x, y);
-        this.vertices.get(y).add(v);
-      }
+  // returns the weights Kruskal's algorithm carved the maze by, drawn again from
+  // the seed, or no weight at all if another generator carved it
+  EdgeWeights edgeWeights() {
+    if (this.generator != this.kruskal) {
+      return new UniformEdgeWeights();
     }
+    return this.kruskal.weigh(this.grid, new Random(this.seed));
   }
 
-  // connect all adjacent vertices with randomly weighted edges
-  void assignEdges() {
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        // check that v isn't a corner or an edge vertex
-        if (v.col != 0) {
-          v.edges.add(new Edge(this.rand.nextInt(100 * 60), v, row.get(v.col - 1)));
-        }
-
-        if (v.col != this.cols - 1) {
-          v.edges.add(new Edge(this.rand.nextInt(100 * 60), v, row.get(v.col + 1)));
-        }
-
-        if (v.row != 0) {
-          v.edges.add(
-              new Edge(this.rand.nextInt(100 * 60), v, this.vertices.get(v.row - 1).get(v.col)));
-        }
+  // does the cell have the given mark?
+  boolean isMarked(int cell, int mark) {
+    return (this.marks[cell] & mark) != 0;
+  }
 
-        if (v.row != this.rows - 1) {
-          v.edges.add(
-              new Edge(this.rand.nextInt(100 * 60), v, this.vertices.get(v.row + 1).get(v.col)));
-        }
-      }
+  // EFFECT: sizes the cells, the view and the scene for a maze this big
+  void layout(int cols, int rows) {
+    boolean large = cols > 40 || rows > 20;
+    this.cellSize = large ? Maze.LARGE_SIZE : Maze.SIZE;
+    this.panelSize = this.cellSize;
+    // even, so the frame centers on a pixel
+    this.viewWidth = Math.min((cols * this.cellSize + 3) & ~1, Maze.MAX_VIEW_WIDTH);
+    this.viewHeight = Math.min((rows * this.cellSize + 3) & ~1, Maze.MAX_VIEW_HEIGHT);
+    this.viewX = 0;
+    this.viewY = 0;
+    this.blockSize = 1;
+    // the panel's rows are as tall as a label at this panel size, unless that
+    // would run them past the bottom of the window the maze opens in
+    int window = this.viewHeight + 2;
+    this.rowHeight = Math.max(1, Math.min(1000 / this.panelSize, window / Maze.PANEL_ROWS));
+    this.panelTop = Math.max(0,
+        Math.min(this.panelSize + 60, window - Maze.PANEL_ROWS * this.rowHeight));
+    if (large) {
+      this.sceneWidth = this.viewWidth + 400;
+      this.sceneHeight = this.viewHeight + 2;
     }
   }
 
-  // create minimum spanning tree using Kruskal's algorithm
-  void kruskals() {
-    // get all edges and sort them by weight
-    ArrayList<Edge> sortedEdges = this.sortEdges();
-
-    // reset all vertices' edges
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        v.edges = new ArrayList<Edge>();
-      }
-    }
+  // draws the initial Maze: starts a new raster the size of the view, which the
+  // searches then draw over, and a frame to show it in
+  void drawInitialMaze() {
+    this.raster = new RasterLayer(this.viewWidth, this.viewHeight);
+    this.frame = new ComputedPixelImage(this.viewWidth, this.viewHeight);
+    this.raced = new byte[this.grid.size()];
+    this.redraw();
+  }
 
-    // hashmap to keep track of representatives and nodes
-    HashMap<Vertex, Vertex> representatives = new HashMap<Vertex, Vertex>();
-    // initialize each vertex's representative to itself
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        representatives.put(v, v);
-      }
+  // EFFECT: draws every cell in the view again, floor and walls first, then what
+  // the searches left on it, skipping the cells outside the view
+  void redraw() {
+    if (this.blockSize > 1) {
+      this.redrawBlocks();
+      return;
     }
 
-    // to keep track of number of edges
-    int count = 0;
-
-    // while #edges is less than #vertices - 1
-    while (count < this.cols * this.rows - 1) {
-      // get the edge with the lowest weight
-      Edge e = sortedEdges.get(0);
-
-      // if this edge's source's representative is not equal to its destination's
-      // representative,
-      // add this edge to the MST
-      if (this.find(representatives, e.src) != this.find(representatives, e.dest)) {
+    int cs = this.cellSize;
+    int firstCol = Math.max(0, this.viewX / cs);
+    int lastCol = Math.min(this.cols - 1, (this.viewX + this.viewWidth - 1) / cs);
+    int firstRow = Math.max(0, this.viewY / cs);
+    int lastRow = Math.min(this.rows - 1, (this.viewY + this.viewHeight - 1) / cs);
 
-        // add edges to form minimum spanning tree
-        e.src.edges.add(e);
-        e.dest.edges.add(new Edge(e.weight, e.dest, e.src));
+    this.raster.fill(0, 0, this.viewWidth, this.viewHeight, new Color(0, 0, 0, 0));
 
-        // perform union operation
-        Vertex result = this.find(representatives, e.dest);
-        representatives.remove(result);
-        representatives.put(result, find(representatives, e.src));
-
-        // advance the counter
-        count++;
+    // draw the floor of each cell
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        this.raster.fill(col * cs - this.viewX, row * cs - this.viewY, cs, cs,
+            cs < Maze.DETAIL_SIZE ? this.blockColor(row * this.cols + col)
+                : this.floorColor(row * this.cols + col));
       }
-      // discard this edge and go on to the next
-      sortedEdges.remove(0);
     }
-  }
-
-  // returns the Vertex from the given representative
-  Vertex find(HashMap<Vertex, Vertex> representatives, Vertex rep) {
-    if (representatives.get(rep).equals(rep)) {
-      return rep;
+    if (cs < Maze.DETAIL_SIZE) {
+      // each cell is a block of one color, so there's nothing left to draw
+      return;
     }
-    return find(representatives, representatives.get(rep));
-  }
 
-  // sort all edges and return sorted arraylist
-  ArrayList<Edge> sortEdges() {
-    ArrayList<Edge> result = new ArrayList<Edge>();
-
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        for (Edge e : v.edges) {
-          result.add(e);
+    // draw the walls
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        int cell = row * this.cols + col;
+        int x = col * cs - this.viewX;
+        int y = row * cs - this.viewY;
+        if (!this.grid.isOpen(cell, MazeGrid.NORTH)) {
+          this.raster.fill(x, y, cs, 2, Color.darkGray);
+        }
+        if (!this.grid.isOpen(cell, MazeGrid.SOUTH)) {
+          this.raster.fill(x, y + cs, cs, 2, Color.darkGray);
+        }
+        if (!this.grid.isOpen(cell, MazeGrid.EAST)) {
+          this.raster.fill(x + cs, y, 2, cs, Color.darkGray);
+        }
+        if (!this.grid.isOpen(cell, MazeGrid.WEST)) {
+          this.raster.fill(x, y, 2, cs, Color.darkGray);
         }
       }
     }
 
-    result.sort(new CompareWeights());
-    return result;
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        this.drawState(row * this.cols + col);
+      }
+    }
   }
 
-  // determine what "walls" each vertex should have
-  void setWalls() {
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        for (Edge e : v.edges) {
-          if (v.row != 0 && e.dest.equals(this.vertices.get(v.row - 1).get(v.col))) {
-            v.north = true;
-          }
-          if (v.row != this.rows - 1 && e.dest.equals(this.vertices.get(v.row + 1).get(v.col))) {
-            v.south = true;
-          }
-          if (v.col != this.cols - 1 && e.dest.equals(row.get(v.col + 1))) {
-            v.east = true;
-          }
-          if (v.col != 0 && e.dest.equals(row.get(v.col - 1))) {
-            v.west = true;
+  // EFFECT: draws each pixel of the view as the square of cells it stands for,
+  // in the color of the square's most telling cell
+  void redrawBlocks() {
+    int b = this.blockSize;
+    this.raster.fill(0, 0, this.viewWidth, this.viewHeight, new Color(0, 0, 0, 0));
+    int width = Math.min(this.viewWidth, this.extent(this.cols, 1, b) - this.viewX);
+    int height = Math.min(this.viewHeight, this.extent(this.rows, 1, b) - this.viewY);
+    for (int py = 0; py < height; py++) {
+      int firstRow = (this.viewY + py) * b;
+      int lastRow = Math.min(firstRow + b, this.rows);
+      for (int px = 0; px < width; px++) {
+        int firstCol = (this.viewX + px) * b;
+        int lastCol = Math.min(firstCol + b, this.cols);
+        int best = firstRow * this.cols + firstCol;
+        for (int row = firstRow; row < lastRow; row++) {
+          for (int col = firstCol; col < lastCol; col++) {
+            if (this.rank(row * this.cols + col) > this.rank(best)) {
+              best = row * this.cols + col;
+            }
           }
         }
+        this.raster.fill(px, py, 1, 1, this.blockColor(best));
       }
     }
   }
 
-  // draws the initial Maze
-  void drawInitialMaze() {
+  // returns how much the cell's state should show when it shares a pixel with
+  // other cells: the final path most, then searched cells, raced cells, the ends
+  int rank(int cell) {
+    if (this.isMarked(cell, Maze.ON_PATH)) {
+      return 4;
+    }
+    else if (this.isMarked(cell, Maze.SEEN)) {
+      return 3;
+    }
+    else if (this.raced[cell] != 0) {
+      return 2;
+    }
+    else if (cell == this.start || cell == this.finish) {
+      return 1;
+    }
+    return 0;
+  }
+
+  // returns the x of the cell's left edge in the view
+  int cellX(int cell) {
+    int col = cell % this.cols;
+    return (this.blockSize > 1 ? col / this.blockSize : col * this.cellSize) - this.viewX;
+  }
+
+  // returns the y of the cell's top edge in the view
+  int cellY(int cell) {
+    int row = cell / this.cols;
+    return (this.blockSize > 1 ? row / this.blockSize : row * this.cellSize) - this.viewY;
+  }
+
+  // is any of the cell inside the view?
+  boolean isVisible(int cell) {
+    int x = this.cellX(cell);
+    int y = this.cellY(cell);
+    return x < this.viewWidth && x + this.cellSize > 0 && y < this.viewHeight
+        && y + this.cellSize > 0;
+  }
+
+  // EFFECT: draws what the searches have left on the cell, if it's in the view:
+  // an inset square, or the whole cell when cells are too small for detail
+  void drawState(int cell) {
+    if (!this.isVisible(cell)) {
+      return;
+    }
 
-    // draw the vertices
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        scene = v.place(scene, this.cols, this.rows, this.searching);
+    int cs = this.cellSize;
+    if (this.blockSize > 1) {
+      // the pixel is shared, so only a cell with something to show takes it
+      if (this.rank(cell) > 1) {
+        this.raster.fill(this.cellX(cell), this.cellY(cell), 1, 1, this.blockColor(cell));
       }
+      return;
+    }
+    if (cs < Maze.DETAIL_SIZE) {
+      this.raster.fill(this.cellX(cell), this.cellY(cell), cs, cs, this.blockColor(cell));
+      return;
     }
 
-    // draw the walls
-    WorldImage sidewaysWall = new RectangleImage(Maze.SIZE, 2, "solid", Color.darkGray)
-        .movePinhole(-Maze.SIZE / 2, -1);
-    WorldImage uprightWall = new RectangleImage(2, Maze.SIZE, "solid", Color.darkGray)
-        .movePinhole(-1, -Maze.SIZE / 2);
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        if (!v.north) {
-          scene.placeImageXY(sidewaysWall, v.col * Maze.SIZE, v.row * Maze.SIZE);
-        }
-        if (!v.south) {
-          scene.placeImageXY(sidewaysWall, v.col * Maze.SIZE, (v.row + 1) * Maze.SIZE);
-        }
-        if (!v.east) {
-          scene.placeImageXY(uprightWall, (v.col + 1) * Maze.SIZE, v.row * Maze.SIZE);
-        }
-        if (!v.west) {
-          scene.placeImageXY(uprightWall, v.col * Maze.SIZE, v.row * Maze.SIZE);
-        }
+    int sT = cs / 4;
+    int s = cs - sT;
+    int x = this.cellX(cell) + sT;
+    int y = this.cellY(cell) + sT;
+    if (this.isMarked(cell, Maze.ON_PATH)) {
+      this.raster.fill(x, y, s, s, new Color(210, 210, 210));
+      this.raster.fill(x, y, s - 1, s - 1, this.pathColor(cell));
+    }
+    else if (this.isMarked(cell, Maze.SEEN)) {
+      this.raster.fill(x, y, s, s,
+          this.isMarked(cell, Maze.FROM_FINISH) ? Color.cyan : Color.pink);
+    }
+    else {
+      // racers each draw in half of the cell, BFS on the left and DFS on the right
+      if ((this.raced[cell] & 1) != 0) {
+        this.raster.fill(x, y, s / 2, s, Color.pink);
+      }
+      if ((this.raced[cell] & 2) != 0) {
+        this.raster.fill(x + s / 2, y, s / 2, s, Color.orange);
       }
     }
   }
 
-  ArrayList<Vertex> colored;
-  
-  // gets the color of the Vertex based on the distance from the start
-  public Color getColor(Vertex v) {
-    int endCol = this.finish.col;
-    int endRow = this.finish.row;
-    double hue = Math.hypot(v.col, v.row)
-        / Math.hypot(endCol - this.start.col, endRow - this.start.row) * 67 / 72;
-    return Color.getHSBColor((float) hue, 1, 1);
+  // returns the one color standing for the cell when it's too small for detail
+  Color blockColor(int cell) {
+    if (this.isMarked(cell, Maze.ON_PATH)) {
+      return this.pathColor(cell);
+    }
+    else if (this.isMarked(cell, Maze.SEEN)) {
+      return this.isMarked(cell, Maze.FROM_FINISH) ? Color.cyan : Color.pink;
+    }
+    else if (this.raced[cell] == 2) {
+      return Color.orange;
+    }
+    else if (this.raced[cell] != 0) {
+      return Color.pink;
+    }
+    return this.floorColor(cell);
   }
 
-  // generates the maze image and world scene
-  public WorldScene makeScene() {
-
-    int sT = Maze.SIZE / 4;
-    int s = Maze.SIZE - sT;
+  // returns the color of the cell's floor under what the searches leave on it:
+  // pink for the start and the finish, gray for the rest
+  Color floorColor(int cell) {
+    if (cell == this.start || cell == this.finish) {
+      return Color.pink;
+    }
+    return new Color(210, 210, 210);
+  }
 
-    WorldImage rect = new RectangleImage(s, s, "solid", Color.pink).movePinhole(-s / 2, -s / 2);
+  // gets the color of the cell based on the distance from the start
+  public Color getColor(int cell) {
+    double hue = this.distanceFromStart(cell) * 67 / 72;
+    return Color.getHSBColor((float) hue, 1, 1);
+  }
 
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        if (v.alreadySeen && !this.colored.contains(v)) {
+  // returns how far the cell is from the top left, as a fraction of the way
+  // from the start to the finish
+  double distanceFromStart(int cell) {
+    return Math.hypot(cell % this.cols, cell / this.cols)
+        / Math.hypot(this.finish % this.cols - this.start % this.cols,
+            this.finish / this.cols - this.start / this.cols);
+  }
 
-          this.scene.placeImageXY(rect, v.col * Maze.SIZE + sT, v.row * Maze.SIZE + sT);
-          this.colored.add(v);
-        }
-      }
+  // EFFECT: makes the colors and images the scene reuses, if they aren't made yet
+  void cacheImages() {
+    if (this.palette != null) {
+      return;
     }
 
-    for (ArrayList<Vertex> row : this.vertices) {
-      for (Vertex v : row) {
-        if (v.inFinalPath) {
-          WorldImage rect3 = new RectangleImage(s - 1, s - 1, "solid", getColor(v))
-              .movePinhole(-s / 2, -s / 2);
-          WorldImage rect4 = new RectangleImage(s, s, "solid", new Color(210, 210, 210))
-              .movePinhole(-s / 2, -s / 2);
-          scene.placeImageXY(rect4, v.col * Maze.SIZE + sT, v.row * Maze.SIZE + sT);
-          scene.placeImageXY(rect3, v.col * Maze.SIZE + sT, v.row * Maze.SIZE + sT);
-        }
-      }
+    this.palette = new Color[Maze.HUES];
+    for (int i = 0; i < Maze.HUES; i++) {
+      this.palette[i] = Color.getHSBColor((float) i / (Maze.HUES - 1) * 67 / 72, 1, 1);
     }
 
-    WorldImage scoreB = new TextImage("BFS: " + Integer.toString(this.bfsScore), 400 / Maze.SIZE,
-        Color.black);
+    this.scoreBackground = new RectangleImage(1800 / this.panelSize, this.rowHeight, "solid",
+        Color.white);
+    Arrays.fill(this.shownScores, -1);
+  }
+
+  // returns the palette's hue closest to getColor(cell)
+  Color pathColor(int cell) {
+    double hue = this.distanceFromStart(cell);
+    return this.palette[Math.max(0, Math.min(Maze.HUES - 1,
+        (int) Math.round(hue * (Maze.HUES - 1))))];
+  }
+
+  // generates the maze image and world scene: a new scene each frame, with the
+  // maze's frame and the scores on it
+  public WorldScene makeScene() {
+    this.cacheImages();
 
-    WorldImage scoreD = new TextImage("DFS: " + Integer.toString(this.dfsScore), 400 / Maze.SIZE,
-        Color.black);
+    // only the cells marked since the last frame need drawing, the raster keeps the rest
+    while (!this.dirty.isEmpty()) {
+      this.drawState(this.dirty.pop());
+    }
+    this.raster.copyTo(this.frame);
 
-    scene.placeImageXY(new RectangleImage(1800 / Maze.SIZE, 1000 / Maze.SIZE, "solid", Color.white),
-        this.cols * Maze.SIZE + 100, Maze.SIZE + 80);
-    scene.placeImageXY(scoreB, this.cols * Maze.SIZE + 100, Maze.SIZE + 80);
+    this.scene = new WorldScene(this.sceneWidth, this.sceneHeight);
+    this.scene.placeImageXY(this.frame, this.viewWidth / 2, this.viewHeight / 2);
 
-    scene.placeImageXY(new RectangleImage(1800 / Maze.SIZE, 1000 / Maze.SIZE, "solid", Color.white),
-        this.cols * Maze.SIZE + 100, Maze.SIZE + 180);
-    scene.placeImageXY(scoreD, this.cols * Maze.SIZE + 100, Maze.SIZE + 180);
+    // the labels stack down from the top of the panel, above the winner's text
+    this.placeScore(0, "BFS: ", this.bfsScore);
+    this.placeScore(1, "DFS: ", this.dfsScore);
+    this.placeScore(2, "A*: ", this.aStarScore);
+    this.placeScore(3, "Dijkstra: ", this.dijkstraScore);
+    this.placeScore(4, "Bi-BFS: ", this.meetingScore);
 
     return this.scene;
   }
 
-  // resets the board with the same maze (unsolved), keeping scores
-  void reset(Vertex start, Vertex finish) {
+  // returns the y of the middle of the given row of the score panel
+  int panelY(int row) {
+    return this.panelTop + row * this.rowHeight + this.rowHeight / 2;
+  }
 
-    if (cols > 40 || rows > 20) {
-      Maze.SIZE = 10;
+  // EFFECT: draws a score over a white background in its row of the panel beside
+  // the maze, making its text again only if the score changed
+  void placeScore(int slot, String label, int score) {
+    if (this.shownScores[slot] != score) {
+      this.shownScores[slot] = score;
+      this.scoreImages[slot] = new TextImage(label + Integer.toString(score),
+          Math.max(1, this.rowHeight * 2 / 5), Color.black);
     }
-    this.vertices = new ArrayList<ArrayList<Vertex>>();
+
+    scene.placeImageXY(this.scoreBackground, this.viewWidth + 100, this.panelY(slot));
+    scene.placeImageXY(this.scoreImages[slot], this.viewWidth + 100, this.panelY(slot));
+  }
+
+  // resets the board with the same maze (unsolved), keeping scores
+  void reset() {
     this.rand.setSeed(this.seed);
-    this.colored = new ArrayList<Vertex>();
-    this.alreadySeen = new ArrayDeque<Vertex>();
+    this.stopRace();
+    this.dirty = new IntQueue();
+    this.alreadySeen = new IntStack();
+    this.path = new int[0];
+    this.stepsPerTick = Math.max(1, cols * rows / Maze.CELLS_PER_STEP);
     this.constructGraph();
-    this.start = this.vertices.get(0).get(0);
-    this.finish = this.vertices.get(rows - 1).get(cols - 1);
     this.searching = false;
     this.drawInitialMaze();
   }
 
   // reconstruction method that helps generate the final path
   // image of final path is created in WorldScene
-  public void finalPath(Vertex curr) {
-    curr.inFinalPath = true;
-    if (curr.equals(this.start)) {
-      return;
+  public void finalPath(int cell) {
+    this.showPath(this.search.pathTo(cell));
+  }
+
+  // EFFECT: marks the cells of the path as the final path, to be drawn next frame
+  void showPath(int[] path) {
+    this.path = path;
+    for (int cell : this.path) {
+      this.marks[cell] |= Maze.ON_PATH;
+      this.dirty.add(cell);
+    }
+  }
+
+  // EFFECT: writes the maze, the cells searched so far and the final path to a
+  // PNG file, without drawing it on screen
+  void exportPng(String file, int cellSize, ForkJoinPool pool) {
+    long[] visited = new long[(this.grid.size() + 63) >>> 6];
+    for (int cell = 0; cell < this.grid.size(); cell++) {
+      if (this.isMarked(cell, Maze.SEEN)) {
+        visited[cell >>> 6] |= 1L << cell;
+      }
     }
-    this.finalPath(this.searchingPath.get(curr));
+    new PngExporter(pool, cellSize).export(this.grid, visited, this.path, file);
   }
 
   // help with the animation of the search
   @Override
   public void onTick() {
 
-    if (this.searching) {
-      searchHelp();
+    if (this.race != null) {
+      // a race paused by "p" waits here until a key ends it
+      if (this.searching) {
+        this.raceHelp();
+      }
+    }
+    else if (this.frameBudget > 0) {
+      long deadline = System.nanoTime() + this.frameBudget;
+      // every tick takes at least one step, however slow the machine is
+      while (this.searching) {
+        searchHelp();
+        if (this.searchDone() || System.nanoTime() >= deadline) {
+          break;
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < this.stepsPerTick && this.searching; i++) {
+        searchHelp();
+      }
     }
   }
 
   // takes inputs from keys pressed to execute search and reset
   @Override
   public void onKeyEvent(String key) {
+    // the speed and the view can change while searching
+    this.changeSpeed(key);
+    this.changeView(key);
+
+    // pausing stops whatever is searching, a search or a race
+    if (key.equals("p")) {
+      this.searching = false;
+      return;
+    }
+
     if (this.searching) {
       return;
     }
 
     if (key.equals("b")) {
+      this.stopRace();
       this.searching = true;
-      this.worklist = new Queue<Vertex>();
-      this.alreadySeen = new ArrayDeque<Vertex>();
-      this.worklist.add(start);
-      this.bfs = true;
+      this.search.restart(new IntQueue(), this.start, this.finish);
+      this.alreadySeen = new IntStack();
+      this.algorithm = key;
       this.bfsScore = 0;
     }
 
     if (key.equals("d")) {
+      this.stopRace();
       this.searching = true;
-      this.worklist = new Stack<Vertex>();
-      this.alreadySeen = new ArrayDeque<Vertex>();
-      this.worklist.add(start);
-      this.bfs = false;
+      this.search.restart(new IntStack(), this.start, this.finish);
+      this.alreadySeen = new IntStack();
+      this.algorithm = key;
       this.dfsScore = 0;
     }
 
-    if (key.equals("r")) {
-      this.reset(this.start, this.finish);
+    if (key.equals("a")) {
+      this.stopRace();
+      this.searching = true;
+      this.search.restart(PriorityWorklist.aStar(this.search), this.start, this.finish);
+      this.alreadySeen = new IntStack();
+      this.algorithm = key;
+      this.aStarScore = 0;
     }
 
-    if (key.equals("p")) {
-      this.searching = false;
+    if (key.equals("j")) {
+      this.stopRace();
+      this.searching = true;
+      this.search.restart(PriorityWorklist.dijkstra(this.search, this.edgeWeights()),
+          this.start, this.finish);
+      this.alreadySeen = new IntStack();
+      this.algorithm = key;
+      this.dijkstraScore = 0;
+    }
+
+    if (key.equals("c")) {
+      this.stopRace();
+      this.searching = true;
+      this.race = new SearchRace(this.grid, this.start, this.finish);
+      this.race.pace();
+      this.bfsDrawn = 0;
+      this.dfsDrawn = 0;
+      this.bfsNanos = 0;
+      this.dfsNanos = 0;
+      this.race.start();
+    }
+
+    if (key.equals("m")) {
+      this.stopRace();
+      this.searching = true;
+      if (this.meeting == null) {
+        this.meeting = new BidirectionalSearch(this.search, new GridSearch(this.grid));
+      }
+      this.meeting.restart(this.start, this.finish);
+      this.alreadySeen = new IntStack();
+      this.algorithm = key;
+      this.meetingScore = 0;
+    }
+
+    if (key.equals("r")) {
+      this.reset();
     }
   }
   
+  // EFFECT: "+" doubles and "-" halves the cells searched each tick, or the time
+  // spent searching each tick if "t" switched to a frame budget
+  void changeSpeed(String key) {
+    if (key.equals("t")) {
+      this.frameBudget = this.frameBudget == 0 ? Maze.FRAME_BUDGET : 0;
+    }
+
+    if (key.equals("+") || key.equals("=")) {
+      if (this.frameBudget > 0) {
+        this.frameBudget = Math.min(this.frameBudget * 2, 1000000000);
+      }
+      else {
+        this.stepsPerTick = Math.min(this.stepsPerTick * 2, this.cols * this.rows);
+      }
+    }
+
+    if (key.equals("-")) {
+      if (this.frameBudget > 0) {
+        this.frameBudget = Math.max(this.frameBudget / 2, 1);
+      }
+      else {
+        this.stepsPerTick = Math.max(this.stepsPerTick / 2, 1);
+      }
+    }
+  }
+
+  // EFFECT: "]" zooms in and "[" zooms out around the middle of the view, and
+  // the arrow keys pan it a quarter of the way across, drawing the view again
+  // past one pixel per cell, zooming out puts more cells in each pixel, until
+  // the whole maze fits in the view
+  void changeView(String key) {
+    int size = this.cellSize;
+    int block = this.blockSize;
+    int x = this.viewX;
+    int y = this.viewY;
+
+    if (key.equals("]") || key.equals("[")) {
+      if (key.equals("]") && block > 1) {
+        block /= 2;
+      }
+      else if (key.equals("]")) {
+        size = Math.min(size * 2, Maze.MAX_CELL_SIZE);
+      }
+      else if (size > 1) {
+        size /= 2;
+      }
+      else if (this.extent(this.cols, 1, block) > this.viewWidth
+          || this.extent(this.rows, 1, block) > this.viewHeight) {
+        block *= 2;
+      }
+      // keep the point in the middle of the view where it is
+      double scale = (double) size / block * this.blockSize / this.cellSize;
+      x = (int) ((x + this.viewWidth / 2.0) * scale - this.viewWidth / 2.0);
+      y = (int) ((y + this.viewHeight / 2.0) * scale - this.viewHeight / 2.0);
+    }
+
+    if (key.equals("left")) {
+      x -= this.viewWidth / 4;
+    }
+    if (key.equals("right")) {
+      x += this.viewWidth / 4;
+    }
+    if (key.equals("up")) {
+      y -= this.viewHeight / 4;
+    }
+    if (key.equals("down")) {
+      y += this.viewHeight / 4;
+    }
+
+    // the view stays on the maze, at the top left if the maze is smaller
+    x = Math.max(0, Math.min(x, this.extent(this.cols, size, block) - this.viewWidth));
+    y = Math.max(0, Math.min(y, this.extent(this.rows, size, block) - this.viewHeight));
+
+    if (size != this.cellSize || block != this.blockSize || x != this.viewX
+        || y != this.viewY) {
+      this.cellSize = size;
+      this.blockSize = block;
+      this.viewX = x;
+      this.viewY = y;
+      this.redraw();
+    }
+  }
+
+  // returns how many pixels the given number of cells take across at the given
+  // cell size, or with the given number of cells along each side of a pixel
+  int extent(int cells, int size, int block) {
+    return block > 1 ? (cells + block - 1) / block : cells * size + 2;
+  }
+
   // end the world and display the winner for the maze
   @Override
   public WorldEnd worldEnds() {
+    // a race that finished while paused still gets its path and times
+    if (this.race != null && this.race.isDone()) {
+      this.raceHelp();
+    }
 
-    if (this.bfsScore > 0 && this.dfsScore > 0 && !this.searching) {
+    // a paused race isn't over, so its scores don't pick a winner yet
+    if (this.bfsScore > 0 && this.dfsScore > 0 && !this.searching && this.race == null) {
       return new WorldEnd(true, this.makeLastScene());
     }
     return new WorldEnd(false, this.makeScene());
   }
   
   // Displays last scene
-  WorldScene makeLastScene() {
-    this.scene = this.getEmptyScene();
-
-    this.drawInitialMaze();
+  WorldScene makeLastScene() {
     this.makeScene();
 
     int dfsFinalScore = this.dfsScore;
     int bfsFinalScore = this.bfsScore;
 
-    WorldImage bfsWin = new TextImage("BFS Wins!", 30, Color.black);
-    WorldImage dfsWin = new TextImage("DFS Wins!", 30, Color.black);
+    // the winner's text fits the rows under the scores
+    int winSize = Math.max(1, Math.min(30, this.rowHeight * 3 / 4));
+    WorldImage bfsWin = new TextImage("BFS Wins!", winSize, Color.black);
+    WorldImage dfsWin = new TextImage("DFS Wins!", winSize, Color.black);
 
     if (bfsFinalScore > 0 && dfsFinalScore > 0 && bfsFinalScore < dfsFinalScore
         && !this.searching) {
-      scene.placeImageXY(bfsWin, this.cols * Maze.SIZE + 100, Maze.SIZE + 300);
+      scene.placeImageXY(bfsWin, this.viewWidth + 100, this.panelY(5));
     }
     else {
-      scene.placeImageXY(dfsWin, this.cols * Maze.SIZE + 100, Maze.SIZE + 300);
+      scene.placeImageXY(dfsWin, this.viewWidth + 100, this.panelY(5));
+    }
+
+    // a race also has a winner on the clock
+    if (this.bfsNanos > 0 && this.dfsNanos > 0) {
+      String faster = this.bfsNanos <= this.dfsNanos ? "BFS" : "DFS";
+      WorldImage time = new TextImage(faster + " was faster: "
+          + Math.min(this.bfsNanos, this.dfsNanos) / 1000 + "us",
+          Math.max(1, Math.min(16, this.rowHeight * 2 / 5)), Color.black);
+      scene.placeImageXY(time, this.viewWidth + 100, this.panelY(6));
     }
 
     return scene;
@@ -583,47 +3276,108 @@ class Maze extends World {
 
   // implementation of the abstraction of bfs and dfs
   void searchHelp() {
-    // As long as the worklist isn't empty...
-    if (!worklist.isEmpty()) {
-      Vertex current = worklist.pop();
-      if (current.equals(finish)) {
-        this.searching = false;
-        this.finalPath(this.finish);
-        return; // Success!
+    if (this.algorithm.equals("m")) {
+      this.meetingHelp();
+    }
+    else if (this.search.step()) {
+      int current = this.search.last;
+
+      // add next to alreadySeen, since we're done with it
+      if (this.algorithm.equals("b")) {
+        bfsScore += 1;
       }
-      else if (alreadySeen.contains(current)) {
-        // does nothing: we've already seen this one
+      else if (this.algorithm.equals("d")) {
+        dfsScore += 1;
+      }
+      else if (this.algorithm.equals("a")) {
+        aStarScore += 1;
       }
       else {
-        // add all the neighbors of next to the worklist for further processing
-        for (Edge e : current.edges) {
-          if (!this.alreadySeen.contains(e.dest)) {
-            worklist.add(e.dest);
-            this.searchingPath.put(e.dest, current);
-          }
-        }
-        // add next to alreadySeen, since we're done with it
+        dijkstraScore += 1;
+      }
 
-        if (this.bfs) {
-          bfsScore += 1;
-        }
-        else {
-          dfsScore += 1;
-        }
+      if (this.logVisits) {
+        alreadySeen.add(current);
+      }
+
+      this.marks[current] |= Maze.SEEN;
+      this.dirty.add(current);
+    }
+    else if (this.search.found) {
+      this.searching = false;
+      this.finalPath(this.finish);
+    }
+  }
 
-        alreadySeen.addFirst(current);
+  // steps the bidirectional search, coloring cells from the finish differently
+  void meetingHelp() {
+    if (this.meeting.step()) {
+      int current = this.meeting.last;
+      meetingScore += 1;
 
-        current.alreadySeen = true;
+      if (this.logVisits) {
+        alreadySeen.add(current);
       }
+
+      this.marks[current] |= this.meeting.lastForward ? Maze.SEEN : Maze.SEEN | Maze.FROM_FINISH;
+      this.dirty.add(current);
+    }
+    else if (this.meeting.isDone()) {
+      this.searching = false;
+      this.showPath(this.meeting.path());
     }
   }
 
-}
+  // draws the cells both racers have expanded since the last tick, BFS on the
+  // left half of each cell and DFS on the right, and ends the race when both finish
+  void raceHelp() {
+    // read done first, so every cell published before it is drawn below
+    boolean done = this.race.isDone();
+    // the racers run as far ahead as the animated search would in a tick
+    this.race.allow(this.stepsPerTick);
+    this.bfsDrawn = this.drawRacer(this.race.bfs, this.bfsDrawn, 1);
+    this.dfsDrawn = this.drawRacer(this.race.dfs, this.dfsDrawn, 2);
+    this.bfsScore = this.bfsDrawn;
+    this.dfsScore = this.dfsDrawn;
+
+    if (done) {
+      this.searching = false;
+      this.bfsNanos = this.race.bfs.nanos;
+      this.dfsNanos = this.race.dfs.nanos;
+      this.showPath(this.race.bfs.path);
+      this.race = null;
+    }
+  }
+
+  // EFFECT: cancels the race, if there is one, so its threads stop
+  void stopRace() {
+    if (this.race != null) {
+      this.race.cancel();
+      this.race = null;
+    }
+  }
+
+  // marks the racer's cells from the given one on with its bit, and draws them
+  // returns how many of its cells have now been drawn
+  int drawRacer(Racer racer, int from, int bit) {
+    int count = racer.count;
+    for (int i = from; i < count; i++) {
+      int cell = racer.order[i];
+      this.raced[cell] |= bit;
+      this.drawState(cell);
+    }
+    return count;
+  }
 
-class CompareWeights implements Comparator<Edge> {
-  public int compare(Edge e1, Edge e2) {
-    return e1.weight - e2.weight;
+  // is the search being animated done?
+  boolean searchDone() {
+    if (this.algorithm.equals("m")) {
+      return this.meeting.isDone();
+    }
+    return this.search.isDone();
   }
+
+
 }
 
 class ExamplesMaze {
@@ -632,14 +3386,8 @@ class ExamplesMaze {
   Maze testMazeSmall;
   Maze tm;
 
-  ArrayList<ArrayList<Vertex>> testSmallNodes;
-
-  Vertex v1;
-  Vertex v2;
-  Vertex v3;
-
-  Stack<Vertex> s1;
-  Queue<Vertex> q1;
+  Stack<Integer> s1;
+  Queue<Integer> q1;
 
   void init() {
     this.maze = new Maze(40, 20);
@@ -647,17 +3395,8 @@ class ExamplesMaze {
     this.testMazeSmall = new Maze(3, 2, 425);
     this.tm = new Maze(2, 2, 425);
 
-    this.testSmallNodes = new ArrayList<ArrayList<Vertex>>(Arrays.asList(
-        new ArrayList<Vertex>(Arrays.asList(new Vertex(0, 0), new Vertex(1, 0), new Vertex(2, 0))),
-        new ArrayList<Vertex>(
-            Arrays.asList(new Vertex(0, 1), new Vertex(1, 1), new Vertex(2, 1)))));
-
-    this.v1 = new Vertex(34, 18);
-    this.v2 = new Vertex(28, 18);
-    this.v3 = new Vertex(34, 18);
-
-    this.s1 = new Stack<Vertex>();
-    this.q1 = new Queue<Vertex>();
+    this.s1 = new Stack<Integer>();
+    this.q1 = new Queue<Integer>();
   }
 
   // All mazes generated automatically apply our kruskals method to generate
@@ -668,64 +3407,76 @@ class ExamplesMaze {
    */
   void testGame(Tester t) {
     this.init();
-    // this.testMazeSmall.bigBang(testMaze.cols * Maze.SIZE, testMaze.rows *
-    // Maze.SIZE, 0.01);
-    this.maze.bigBang(maze.cols * Maze.SIZE + 400, maze.rows * Maze.SIZE + 2, .001);
-  }
-
-  void testCreateArray(Tester t) {
-    this.init();
-    this.testMazeSmall.vertices = new ArrayList<ArrayList<Vertex>>();
-    this.testMazeSmall.createArray();
-    t.checkExpect(this.testMazeSmall.vertices, this.testSmallNodes);
+    // this.testMazeSmall.bigBang(testMazeSmall.viewWidth, testMazeSmall.viewHeight, 0.01);
+    this.maze.bigBang(maze.viewWidth + 400, maze.viewHeight + 2, .001);
   }
 
   void testSortEdges(Tester t) {
     this.init();
-    ArrayList<Edge> sorted = this.testMazeSmall.sortEdges();
+    // the candidates are dropped once the maze is carved, so list them again
+    this.testMazeSmall.kruskal.assignEdges(this.testMazeSmall.grid, new Random(425));
+    EdgeList sorted = this.testMazeSmall.kruskal.sortEdges();
 
-    for (int i = 0; i < sorted.size(); i++) {
+    // a 3x2 maze has 7 edges between adjacent cells
+    t.checkExpect(sorted.size, 7);
+
+    for (int i = 0; i < sorted.size; i++) {
       if (i > 0) {
-        t.checkExpect(sorted.get(i).weight >= sorted.get(i - 1).weight, true);
+        t.checkExpect(sorted.weight[i] >= sorted.weight[i - 1], true);
       }
     }
   }
 
-  void testSetWalls(Tester t) {
+  void testSortByWeight(Tester t) {
+    this.init();
+    EdgeList edges = new EdgeList(4);
+    edges.add(0, 5);
+    edges.add(3, 0);
+    edges.add(4, 5);
+    edges.add(7, 2);
+
+    EdgeList sorted = edges.sortByWeight(6);
+
+    t.checkExpect(sorted.size, 4);
+    t.checkExpect(sorted.weight, new int[] { 0, 2, 5, 5 });
+    // edges of equal weight keep their original order
+    t.checkExpect(sorted.edge, new int[] { 3, 7, 0, 4 });
+  }
+
+  void testWalls(Tester t) {
     this.init();
 
-    this.testMazeSmall.setWalls();
-    ArrayList<ArrayList<Vertex>> vList = this.testMazeSmall.vertices;
+    MazeGrid small = this.testMazeSmall.grid;
 
-    t.checkExpect(vList.get(0).get(0).north, false);
-    t.checkExpect(vList.get(0).get(0).south, true);
-    t.checkExpect(vList.get(0).get(0).east, false);
-    t.checkExpect(vList.get(0).get(0).west, false);
+    t.checkExpect(small.isOpen(0, MazeGrid.NORTH), false);
+    t.checkExpect(small.isOpen(0, MazeGrid.SOUTH), true);
+    t.checkExpect(small.isOpen(0, MazeGrid.EAST), false);
+    t.checkExpect(small.isOpen(0, MazeGrid.WEST), false);
 
-    t.checkExpect(vList.get(0).get(1).north, false);
-    t.checkExpect(vList.get(0).get(1).south, false);
-    t.checkExpect(vList.get(0).get(1).east, true);
-    t.checkExpect(vList.get(0).get(1).west, false);
+    t.checkExpect(small.isOpen(1, MazeGrid.NORTH), false);
+    t.checkExpect(small.isOpen(1, MazeGrid.SOUTH), false);
+    t.checkExpect(small.isOpen(1, MazeGrid.EAST), true);
+    t.checkExpect(small.isOpen(1, MazeGrid.WEST), false);
 
-    t.checkExpect(vList.get(0).get(2).north, false);
-    t.checkExpect(vList.get(0).get(2).south, true);
-    t.checkExpect(vList.get(0).get(2).east, false);
-    t.checkExpect(vList.get(0).get(2).west, true);
+    t.checkExpect(small.isOpen(2, MazeGrid.NORTH), false);
+    t.checkExpect(small.isOpen(2, MazeGrid.SOUTH), true);
+    t.checkExpect(small.isOpen(2, MazeGrid.EAST), false);
+    t.checkExpect(small.isOpen(2, MazeGrid.WEST), true);
 
-    t.checkExpect(vList.get(1).get(0).north, true);
-    t.checkExpect(vList.get(1).get(0).south, false);
-    t.checkExpect(vList.get(1).get(0).east, true);
-    t.checkExpect(vList.get(1).get(0).west, false);
+    t.checkExpect(small.isOpen(3, MazeGrid.NORTH), true);
+    t.checkExpect(small.isOpen(3, MazeGrid.SOUTH), false);
+    t.checkExpect(small.isOpen(3, MazeGrid.EAST), true);
+    t.checkExpect(small.isOpen(3, MazeGrid.WEST), false);
 
-    t.checkExpect(vList.get(1).get(1).north, false);
-    t.checkExpect(vList.get(1).get(1).south, false);
-    t.checkExpect(vList.get(1).get(1).east, true);
-    t.checkExpect(vList.get(1).get(1).west, true);
+    t.checkExpect(small.isOpen(4, MazeGrid.NORTH), false);
+    t.checkExpect(small.isOpen(4, MazeGrid.SOUTH), false);
+    t.checkExpect(small.isOpen(4, MazeGrid.EAST), true);
+    t.checkExpect(small.isOpen(4, MazeGrid.WEST), true);
 
-    t.checkExpect(vList.get(1).get(2).north, true);
-    t.checkExpect(vList.get(1).get(2).south, false);
-    t.checkExpect(vList.get(1).get(2).east, false);
-    t.checkExpect(vList.get(1).get(2).west, true);
+    t.checkExpect(small.isOpen(5, MazeGrid.NORTH), true);
+    t.checkExpect(small.isOpen(5, MazeGrid.SOUTH), false);
+    t.checkExpect(small.isOpen(5, MazeGrid.EAST), false);
+    t.checkExpect(small.isOpen(5, MazeGrid.WEST), true);
 
   }
 
@@ -733,262 +3484,516 @@ class ExamplesMaze {
     this.init();
     WorldScene scene = new WorldScene(2000, 1600);
 
-    Maze testMazeTiny = new Maze(1, 1, 1);
-
-    WorldImage vert = new RectangleImage(25, 25, "solid", Color.pink).movePinhole(-12, -12);
-    WorldImage side = new RectangleImage(2, 25, "solid", new Color(64, 64, 64)).movePinhole(-1,
-        -12);
-    WorldImage up = new RectangleImage(25, 2, "solid", new Color(64, 64, 64)).movePinhole(-12, -1);
+    // tall enough for the score panel's rows at their full height
+    Maze testMazeTiny = new Maze(1, 20, 1);
 
-    scene.placeImageXY(vert, 0, 0);
-    scene.placeImageXY(up, 0, 0);
-    scene.placeImageXY(up, 0, 25);
-    scene.placeImageXY(side, 25, 0);
-    scene.placeImageXY(side, 0, 0);
+    // the frame is 28 pixels wide and 502 tall
+    scene.placeImageXY(testMazeTiny.frame, 14, 251);
 
     WorldImage bfs = new TextImage("BFS: 0", 16, Color.black);
     WorldImage dfs = new TextImage("DFS: 0", 16, Color.black);
+    WorldImage aStar = new TextImage("A*: 0", 16, Color.black);
+    WorldImage dijkstra = new TextImage("Dijkstra: 0", 16, Color.black);
+    WorldImage meeting = new TextImage("Bi-BFS: 0", 16, Color.black);
 
     WorldImage whiteBG = new RectangleImage(72, 40, "solid", Color.white);
 
-    scene.placeImageXY(whiteBG, 125, 105);
-    scene.placeImageXY(bfs, 125, 105);
-    scene.placeImageXY(whiteBG, 125, 205);
-    scene.placeImageXY(dfs, 125, 205);
+    scene.placeImageXY(whiteBG, 128, 105);
+    scene.placeImageXY(bfs, 128, 105);
+    scene.placeImageXY(whiteBG, 128, 145);
+    scene.placeImageXY(dfs, 128, 145);
+    scene.placeImageXY(whiteBG, 128, 185);
+    scene.placeImageXY(aStar, 128, 185);
+    scene.placeImageXY(whiteBG, 128, 225);
+    scene.placeImageXY(dijkstra, 128, 225);
+    scene.placeImageXY(whiteBG, 128, 265);
+    scene.placeImageXY(meeting, 128, 265);
 
     t.checkExpect(testMazeTiny.makeScene(), scene);
     t.checkExpect(scene, testMazeTiny.makeScene());
+
+    // each frame is a new scene, and searching draws into the frame
+    Maze m = new Maze(3, 3, 4);
+    WorldScene first = m.makeScene();
+    t.checkExpect(m.makeScene() == first, false);
+    t.checkExpect(m.frame.getPixel(10, 10), Color.pink);
+    t.checkExpect(m.frame.getPixel(35, 10), new Color(210, 210, 210));
+    m.onKeyEvent("b");
+    m.onTick();
+    m.onTick();
+    m.makeScene();
+    int x = m.search.last % 3 * 25;
+    int y = m.search.last / 3 * 25;
+    t.checkExpect(m.frame.getPixel(x + 10, y + 10), Color.pink);
+    // visited cells are inset from the floor around them
+    t.checkExpect(m.frame.getPixel(x + 4, y + 10), new Color(210, 210, 210));
+
+    // resetting starts a clean frame over the same walls
+    m.reset();
+    m.makeScene();
+    t.checkExpect(m.frame.getPixel(x + 10, y + 10), new Color(210, 210, 210));
   }
 
-  void testFind(Tester t) {
+  void testMazeGrid(Tester t) {
     this.init();
+    MazeGrid grid = new MazeGrid(3, 2);
+
+    t.checkExpect(grid.size(), 6);
+    t.checkExpect(grid.index(2, 1), 5);
+
+    // neighbors off the edge of the grid don't exist
+    t.checkExpect(grid.neighbor(0, MazeGrid.NORTH), -1);
+    t.checkExpect(grid.neighbor(0, MazeGrid.WEST), -1);
+    t.checkExpect(grid.neighbor(2, MazeGrid.EAST), -1);
+    t.checkExpect(grid.neighbor(4, MazeGrid.SOUTH), -1);
+    t.checkExpect(grid.neighbor(4, MazeGrid.NORTH), 1);
+    t.checkExpect(grid.neighbor(4, MazeGrid.EAST), 5);
+    t.checkExpect(grid.direction(4, 3), MazeGrid.WEST);
+    t.checkExpect(MazeGrid.opposite(MazeGrid.SOUTH), MazeGrid.NORTH);
+
+    // opening a wall opens it from both sides
+    grid.open(1, MazeGrid.SOUTH);
+    grid.open(4, MazeGrid.EAST);
+    t.checkExpect(grid.isOpen(1, MazeGrid.SOUTH), true);
+    t.checkExpect(grid.isOpen(4, MazeGrid.NORTH), true);
+    t.checkExpect(grid.isOpen(5, MazeGrid.WEST), true);
+    t.checkExpect(grid.isOpen(1, MazeGrid.EAST), false);
+
+    int[] out = new int[4];
+    t.checkExpect(grid.openNeighbors(4, out), 2);
+    t.checkExpect(out[0], 1);
+    t.checkExpect(out[1], 5);
+
+    grid.clear();
+    t.checkExpect(grid.openNeighbors(4, out), 0);
+
+    // a generated maze's grid has the passages it was carved with
+    MazeGrid small = this.testMazeSmall.grid;
+    t.checkExpect(small.isOpen(0, MazeGrid.SOUTH), true);
+    t.checkExpect(small.isOpen(1, MazeGrid.EAST), true);
+    t.checkExpect(small.isOpen(5, MazeGrid.NORTH), true);
+    t.checkExpect(small.isOpen(0, MazeGrid.EAST), false);
+  }
 
-    HashMap<Vertex, Vertex> representatives = new HashMap<Vertex, Vertex>();
+  // is every cell of the grid reachable from the top left through exactly one
+  // path?
+  boolean isPerfect(MazeGrid grid) {
+    int passages = 0;
+    for (int cell = 0; cell < grid.size(); cell++) {
+      passages += Integer.bitCount(grid.cells[cell]);
+    }
 
-    for (ArrayList<Vertex> row : this.testMazeSmall.vertices) {
-      for (Vertex v : row) {
-        representatives.put(v, v);
+    boolean[] seen = new boolean[grid.size()];
+    int[] stack = new int[grid.size()];
+    int[] out = new int[4];
+    int top = 0;
+    int reached = 1;
+    stack[top++] = 0;
+    seen[0] = true;
+    while (top > 0) {
+      int count = grid.openNeighbors(stack[--top], out);
+      for (int i = 0; i < count; i++) {
+        if (!seen[out[i]]) {
+          seen[out[i]] = true;
+          stack[top++] = out[i];
+          reached++;
+        }
       }
     }
 
-    Vertex ver1 = new Vertex(10, 12);
-    Vertex ver2 = new Vertex(10, 12);
-    Vertex ver3 = new Vertex(10, 12);
-
-    representatives.put(ver1, ver2);
-    representatives.put(ver2, ver3);
-
-    t.checkExpect(this.testMazeSmall.find(representatives, testMazeSmall.vertices.get(0).get(0)),
-        testMazeSmall.vertices.get(0).get(0));
-    t.checkExpect(this.testMazeSmall.find(representatives, testMazeSmall.vertices.get(1).get(2)),
-        testMazeSmall.vertices.get(1).get(2));
-    t.checkExpect(this.testMazeSmall.find(representatives, ver2), ver1);
-    t.checkExpect(this.testMazeSmall.find(representatives, ver3), ver1);
+    // a spanning tree has one fewer edge than cells, each seen from both sides
+    return reached == grid.size() && passages == 2 * (grid.size() - 1);
   }
 
-  void testAssignEdges(Tester t) {
+  void testGenerators(Tester t) {
     this.init();
-    this.testMazeSmall.assignEdges();
-
-    ArrayList<Edge> edges = new ArrayList<Edge>();
-
-    for (ArrayList<Vertex> row : testMazeSmall.vertices) {
-      for (Vertex v : row) {
-        for (Edge e : v.edges) {
-          edges.add(e);
-        }
+    MazeGenerator[] generators = { new KruskalGenerator(), new BacktrackerGenerator(),
+        new PrimGenerator(), new WilsonGenerator(), new EllerGenerator(),
+        new TiledGenerator(4) };
+
+    for (MazeGenerator g : generators) {
+      for (int size = 1; size < 30; size += 7) {
+        MazeGrid grid = new MazeGrid(size, size + 3);
+        g.generate(grid, new Random(size));
+        t.checkExpect(this.isPerfect(grid), true);
       }
     }
 
-    // every vertex should be connected to every other one -> 24 edges
-    t.checkExpect(edges.size(), 24);
-    t.checkExpect(edges.get(0).weight, 787);
-    t.checkExpect(edges.get(18).weight, 1200);
+    // mazes built with another generator are searched on the grid it carved
+    Maze wilson = new Maze(4, 3, 425, new WilsonGenerator());
+    t.checkExpect(this.isPerfect(wilson.grid), true);
+    t.checkExpect(wilson.search.grid == wilson.grid, true);
+
+    // the same seed carves the same maze
+    MazeGrid a = new MazeGrid(12, 9);
+    MazeGrid b = new MazeGrid(12, 9);
+    new PrimGenerator().generate(a, new Random(3));
+    new PrimGenerator().generate(b, new Random(3));
+    t.checkExpect(a.cells, b.cells);
   }
 
-  void testKruskals(Tester t) {
+  void testParallelBoruvka(Tester t) {
     this.init();
+    ForkJoinPool pool = new ForkJoinPool(4);
 
-    // kruskals is already called when you generate a new maze
-    Maze m2 = new Maze(2, 2, 425);
-
-    // generates a 2x2 maze with 1 edge
-    m2.kruskals();
-
-    // tests show that each Vertex is connected, but the Vertexes don't loop,
-    // if you start in the top left of the maze (or anywhere),
-    // you cannot get back to where you start through any Vertex
-
-    // shows that the top left Vertex of the maze has an edge with the bottom left
-    // there isn't an edge to connect the top left and top right
-    t.checkExpect(m2.vertices.get(0).get(0).east, false);
-    t.checkExpect(m2.vertices.get(0).get(0).west, false);
-    t.checkExpect(m2.vertices.get(0).get(0).north, false);
-    t.checkExpect(m2.vertices.get(0).get(0).south, true);
-
-    // shows that the top right Vertex of the maze has an edge with the bottom right
-    t.checkExpect(m2.vertices.get(0).get(1).east, false);
-    t.checkExpect(m2.vertices.get(0).get(1).west, false);
-    t.checkExpect(m2.vertices.get(0).get(1).north, false);
-    t.checkExpect(m2.vertices.get(0).get(1).south, true);
-
-    // shows that the bottom left Vertex of the maze has an edge with top left and
-    // bottom right
-    t.checkExpect(m2.vertices.get(1).get(0).east, true);
-    t.checkExpect(m2.vertices.get(1).get(0).west, false);
-    t.checkExpect(m2.vertices.get(1).get(0).north, true);
-    t.checkExpect(m2.vertices.get(1).get(0).south, false);
+    for (int size = 1; size < 60; size += 11) {
+      MazeGrid sequential = new MazeGrid(size + 5, size);
+      MazeGrid parallel = new MazeGrid(size + 5, size);
+      new KruskalGenerator().generate(sequential, new Random(size));
+      new KruskalGenerator(pool).generate(parallel, new Random(size));
 
-    // shows that the bottom right Vertex of the maze has an edge with the bottom
-    // left and top right
-    t.checkExpect(m2.vertices.get(1).get(1).east, false);
-    t.checkExpect(m2.vertices.get(1).get(1).west, true);
-    t.checkExpect(m2.vertices.get(1).get(1).north, true);
-    t.checkExpect(m2.vertices.get(1).get(1).south, false);
+      // the same weights give exactly the same tree
+      t.checkExpect(parallel.cells, sequential.cells);
+    }
 
-    // other tests
+    // including the mazes of existing seeds
+    t.checkExpect(new Maze(10, 6, 425, new KruskalGenerator(pool)).grid.cells,
+        this.testMaze.grid.cells);
 
-    // amount of edges that top left node has (1)
-    t.checkExpect(m2.vertices.get(0).get(0).edges.size(), 1);
+    // and ties between equal weights break the same way
+    MazeGrid tied = new MazeGrid(9, 7);
+    KruskalGenerator kruskal = new KruskalGenerator();
+    kruskal.assignEdges(tied, new Random(1));
+    for (int i = 0; i < kruskal.candidates.size; i++) {
+      kruskal.candidates.weight[i] = i % 3;
+    }
+    kruskal.kruskals(tied);
+    MazeGrid boruvka = new MazeGrid(9, 7);
+    new ParallelBoruvka(pool).carve(boruvka, kruskal.candidates);
+    t.checkExpect(boruvka.cells, tied.cells);
 
-    // top left node has an edge with bottom left node and NOT the top right node
-    t.checkExpect(m2.vertices.get(0).get(0).edges.get(0).dest, m2.vertices.get(1).get(0));
+    pool.shutdown();
+  }
 
-    // amount of edges that bottom left node has (2)
-    t.checkExpect(m2.vertices.get(1).get(0).edges.size(), 2);
+  void testHashedEdgeWeights(Tester t) {
+    this.init();
+    HashedEdgeWeights weights = new HashedEdgeWeights(42);
+    HashedEdgeWeights same = new HashedEdgeWeights(42);
+
+    // every weight is in range and depends only on the seed and the edge, not on
+    // which edges were weighed before it
+    int[] forwards = new int[500];
+    for (int edge = 0; edge < 500; edge++) {
+      forwards[edge] = weights.weight(edge);
+      t.checkExpect(forwards[edge] >= 0 && forwards[edge] < KruskalGenerator.MAX_WEIGHT, true);
+    }
+    for (int edge = 499; edge >= 0; edge--) {
+      t.checkExpect(same.weight(edge), forwards[edge]);
+    }
+    t.checkExpect(new HashedEdgeWeights(43).weight(7) == weights.weight(7)
+        && new HashedEdgeWeights(43).weight(8) == weights.weight(8), false);
+
+    // hashed weights carve perfect mazes, the same with or without Boruvka
+    ForkJoinPool pool = new ForkJoinPool(2);
+    MazeGrid sequential = new MazeGrid(23, 31);
+    MazeGrid parallel = new MazeGrid(23, 31);
+    KruskalGenerator kruskal = new KruskalGenerator(null, true);
+    kruskal.generate(sequential, new Random(5));
+    new KruskalGenerator(pool, true).generate(parallel, new Random(5));
+    t.checkExpect(this.isPerfect(sequential), true);
+    t.checkExpect(parallel.cells, sequential.cells);
+    pool.shutdown();
+
+    // the Random stays the default, so the example mazes keep their layout
+    t.checkExpect(this.testMaze.edgeWeights() instanceof StoredEdgeWeights, true);
+    t.checkExpect(this.testMaze.kruskal.candidates, null);
+    t.checkExpect(this.testMaze.kruskal.weights, null);
+
+    // the weights drawn again are the ones the maze was carved by
+    MazeGrid carvedAgain = new MazeGrid(10, 6);
+    new KruskalGenerator().generate(carvedAgain, new Random(this.testMaze.seed));
+    t.checkExpect(carvedAgain.cells, this.testMaze.grid.cells);
+    KruskalGenerator again = new KruskalGenerator();
+    again.assignEdges(this.testMaze.grid, new Random(this.testMaze.seed));
+    EdgeList carved = again.candidates;
+    EdgeWeights drawn = this.testMaze.edgeWeights();
+    for (int i = 0; i < carved.size; i++) {
+      t.checkExpect(drawn.weight(carved.edge[i]), carved.weight[i]);
+    }
+    EdgeWeights uncarved = new Maze(4, 3, 425, new WilsonGenerator()).edgeWeights();
+    t.checkExpect(uncarved instanceof UniformEdgeWeights, true);
+    t.checkExpect(uncarved.weight(0), 0);
+  }
 
-    // bottom left node has an edge with top left node
-    t.checkExpect(m2.vertices.get(1).get(0).edges.get(0).dest, m2.vertices.get(0).get(0));
-    // bottom left node has an edge with bottom right node
-    t.checkExpect(m2.vertices.get(1).get(0).edges.get(1).dest, m2.vertices.get(1).get(1));
+  void testTiledGenerator(Tester t) {
+    this.init();
+    ForkJoinPool one = new ForkJoinPool(1);
+    ForkJoinPool four = new ForkJoinPool(4);
 
-    // amount of edges that the bottom right node has (2)
-    t.checkExpect(m2.vertices.get(1).get(0).edges.size(), 2);
+    // tiles that don't divide the grid evenly are cut short at its edges
+    MazeGrid serial = new MazeGrid(50, 37);
+    MazeGrid parallel = new MazeGrid(50, 37);
+    new TiledGenerator(8, one).generate(serial, new Random(11));
+    new TiledGenerator(8, four).generate(parallel, new Random(11));
 
-    // bottom right node has an edge with top right node
-    t.checkExpect(m2.vertices.get(1).get(1).edges.get(0).dest, m2.vertices.get(0).get(1));
-    // bottom right node has an edge with bottom left node
-    t.checkExpect(m2.vertices.get(1).get(1).edges.get(1).dest, m2.vertices.get(1).get(0));
+    t.checkExpect(this.isPerfect(parallel), true);
+    // the same seed carves the same maze no matter how many threads carve it
+    t.checkExpect(parallel.cells, serial.cells);
 
-    // amount of edges that the top right node has (1)
-    t.checkExpect(m2.vertices.get(0).get(1).edges.size(), 1);
+    one.shutdown();
+    four.shutdown();
+  }
 
-    // top right node has an edge with bottom right node and NOT the top left node
-    t.checkExpect(m2.vertices.get(0).get(1).edges.get(0).dest, m2.vertices.get(1).get(1));
+  void testEllerStream(Tester t) {
+    this.init();
+    MazeGrid grid = new MazeGrid(17, 11);
+    new EllerGenerator().generate(grid, new Random(8));
+
+    // streaming the same seed to a stream writes the grid row by row
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new EllerGenerator().stream(17, 11, new Random(8), new StreamRowSink(out));
+    t.checkExpect(out.toByteArray(), grid.cells);
+
+    // rows arrive in order, one row wide, and only open onto the rows around them
+    int[] next = new int[1];
+    new EllerGenerator().stream(5, 40, new Random(2), (row, cells) -> {
+      t.checkExpect(row, next[0]++);
+      t.checkExpect(cells.length, 5);
+      for (byte bits : cells) {
+        t.checkExpect(row == 0 && (bits & MazeGrid.NORTH) != 0, false);
+        t.checkExpect(row == 39 && (bits & MazeGrid.SOUTH) != 0, false);
+      }
+    });
+    t.checkExpect(next[0], 40);
   }
 
-  void testConstructGraph(Tester t) {
+  void testLongHeap(Tester t) {
     this.init();
+    LongHeap heap = new LongHeap(1);
+
+    t.checkExpect(heap.isEmpty(), true);
+    heap.push(5);
+    heap.push(-2);
+    heap.push(9);
+    heap.push(0);
+    heap.push(5);
+
+    t.checkExpect(heap.pop(), -2L);
+    t.checkExpect(heap.pop(), 0L);
+    t.checkExpect(heap.pop(), 5L);
+    t.checkExpect(heap.pop(), 5L);
+    t.checkExpect(heap.pop(), 9L);
+    t.checkExpect(heap.isEmpty(), true);
+  }
 
-    // constructgraph is called when you create a maze
-    Maze testMazeTiny = new Maze(1, 1, 4425);
+  void testUnionFind(Tester t) {
+    this.init();
 
-    Vertex v = new Vertex(0, 0);
-    v.c = Color.pink;
+    UnionFind sets = new UnionFind(6);
 
-    ArrayList<ArrayList<Vertex>> verts = new ArrayList<ArrayList<Vertex>>(
-        Arrays.asList(new ArrayList<Vertex>(Arrays.asList(v))));
+    // every cell starts as its own representative
+    t.checkExpect(sets.find(0), 0);
+    t.checkExpect(sets.find(5), 5);
 
-    Maze m2 = new Maze(2, 1, 425);
-    Vertex v1 = new Vertex(0, 0);
-    Vertex v2 = new Vertex(1, 0);
-    v1.east = true;
-    v2.west = true;
+    t.checkExpect(sets.union(0, 1), true);
+    t.checkExpect(sets.union(2, 1), true);
+    t.checkExpect(sets.find(2), sets.find(0));
 
-    v2.c = new Color(255, 175, 175);
-    v1.c = new Color(255, 175, 175);
-    Edge e1 = new Edge(787, v1, v2);
-    Edge e2 = new Edge(787, v2, v1);
-    v1.edges.add(e1);
-    v2.edges.add(e2);
+    // already connected cells are not merged again
+    t.checkExpect(sets.union(0, 2), false);
+    t.checkExpect(sets.find(3) == sets.find(0), false);
 
-    ArrayList<ArrayList<Vertex>> verts2 = new ArrayList<ArrayList<Vertex>>(
-        Arrays.asList(new ArrayList<Vertex>(Arrays.asList(v1, v2))));
+    // union by rank keeps the taller tree's root
+    t.checkExpect(sets.union(3, 0), true);
+    t.checkExpect(sets.find(3), 0);
+    t.checkExpect(sets.rank[0], (byte) 1);
 
-    t.checkExpect(m2.vertices, verts2);
-    t.checkExpect(testMazeTiny.vertices, verts);
+    // find compresses the path straight to the root
+    sets.parent[4] = 5;
+    sets.parent[5] = 3;
+    t.checkExpect(sets.find(4), 0);
+    t.checkExpect(sets.parent[4], 0);
+    t.checkExpect(sets.parent[5], 0);
   }
 
-  void testEquals(Tester t) {
+  void testAssignEdges(Tester t) {
     this.init();
+    this.testMazeSmall.kruskal.assignEdges(this.testMazeSmall.grid, new Random(425));
+
+    EdgeList edges = this.testMazeSmall.kruskal.candidates;
+
+    // every pair of adjacent cells is connected by exactly one edge -> 7 edges
+    t.checkExpect(edges.size, 7);
 
-    t.checkExpect(this.v1.equals(v1), true);
-    t.checkExpect(this.v1.equals(v2), false);
-    t.checkExpect(this.v1.equals(v3), true);
+    boolean[] listed = new boolean[12];
+    for (int i = 0; i < edges.size; i++) {
+      t.checkExpect(listed[edges.edge[i]], false);
+      listed[edges.edge[i]] = true;
+      t.checkExpect(this.testMazeSmall.grid.neighbor(MazeGrid.edgeCell(edges.edge[i]),
+          MazeGrid.edgeDir(edges.edge[i])) >= 0, true);
+    }
+
+    // the top left cell's east edge is drawn first
+    t.checkExpect(edges.edge[0], MazeGrid.edge(0, MazeGrid.EAST));
+    t.checkExpect(edges.weight[0], 5796);
   }
 
-  void testHashCode(Tester t) {
+  void testPackedEdges(Tester t) {
     this.init();
-
-    t.checkExpect(this.v1.hashCode(), 340018);
-    t.checkExpect(this.v2.hashCode(), 280018);
-    t.checkExpect(this.v3.hashCode(), 340018);
+    MazeGrid grid = new MazeGrid(3, 2);
+
+    t.checkExpect(grid.edgeCount(), 7);
+    t.checkExpect(MazeGrid.edge(4, MazeGrid.EAST), 8);
+    t.checkExpect(MazeGrid.edge(4, MazeGrid.SOUTH), 9);
+    t.checkExpect(MazeGrid.edgeCell(9), 4);
+    t.checkExpect(MazeGrid.edgeDir(9), MazeGrid.SOUTH);
+    t.checkExpect(MazeGrid.edgeDir(8), MazeGrid.EAST);
+    t.checkExpect(grid.edgeBetween(5, 4), MazeGrid.edge(4, MazeGrid.EAST));
+    t.checkExpect(grid.edgeBetween(1, 4), MazeGrid.edge(1, MazeGrid.SOUTH));
+    // the cell below is a whole row of indices away
+    t.checkExpect(grid.edgeBetween(0, 3), MazeGrid.edge(0, MazeGrid.SOUTH));
   }
 
-  void testPlace(Tester t) {
+  void testKruskals(Tester t) {
     this.init();
 
-    Vertex x1 = new Vertex(0, 0);
-    Vertex x2 = new Vertex(1, 2);
+    // kruskals is already called when you generate a new maze
+    Maze m2 = new Maze(2, 2, 425);
+
+    // generates a 2x2 maze with 3 passages
+    MazeGrid grid = m2.grid;
 
-    WorldScene test = this.testMazeSmall.getEmptyScene();
+    // tests show that each cell is connected, but the cells don't loop,
+    // if you start in the top left of the maze (or anywhere),
+    // you cannot get back to where you start through any cell
+
+    // shows that the top left cell of the maze has a passage to the bottom left
+    // there isn't a passage between the top left and top right
+    t.checkExpect(grid.isOpen(0, MazeGrid.EAST), false);
+    t.checkExpect(grid.isOpen(0, MazeGrid.WEST), false);
+    t.checkExpect(grid.isOpen(0, MazeGrid.NORTH), false);
+    t.checkExpect(grid.isOpen(0, MazeGrid.SOUTH), true);
+
+    // shows that the top right cell of the maze has a passage to the bottom right
+    t.checkExpect(grid.isOpen(1, MazeGrid.EAST), false);
+    t.checkExpect(grid.isOpen(1, MazeGrid.WEST), false);
+    t.checkExpect(grid.isOpen(1, MazeGrid.NORTH), false);
+    t.checkExpect(grid.isOpen(1, MazeGrid.SOUTH), true);
+
+    // shows that the bottom left cell of the maze has passages to the top left and
+    // bottom right
+    t.checkExpect(grid.isOpen(2, MazeGrid.EAST), true);
+    t.checkExpect(grid.isOpen(2, MazeGrid.WEST), false);
+    t.checkExpect(grid.isOpen(2, MazeGrid.NORTH), true);
+    t.checkExpect(grid.isOpen(2, MazeGrid.SOUTH), false);
+
+    // shows that the bottom right cell of the maze has passages to the bottom
+    // left and top right
+    t.checkExpect(grid.isOpen(3, MazeGrid.EAST), false);
+    t.checkExpect(grid.isOpen(3, MazeGrid.WEST), true);
+    t.checkExpect(grid.isOpen(3, MazeGrid.NORTH), true);
+    t.checkExpect(grid.isOpen(3, MazeGrid.SOUTH), false);
 
-    WorldScene mt = this.testMazeSmall.getEmptyScene();
+    // other tests
+    int[] out = new int[4];
 
-    WorldImage rect = new RectangleImage(26, 26, "solid", Color.green).movePinhole(-13, -13);
-    test.placeImageXY(rect, 0, 0);
+    // the top left cell only reaches the bottom left cell, NOT the top right one
+    t.checkExpect(grid.openNeighbors(0, out), 1);
+    t.checkExpect(out[0], 2);
 
-    t.checkExpect(x1.place(mt, 3, 2, false), test);
+    // the bottom left cell reaches the top left and bottom right cells
+    t.checkExpect(grid.openNeighbors(2, out), 2);
+    t.checkExpect(out[0], 0);
+    t.checkExpect(out[1], 3);
 
-    WorldImage rect1 = new RectangleImage(26, 26, "solid", new Color(210, 210, 210))
-        .movePinhole(-13, -13);
-    test.placeImageXY(rect1, 26, 0);
+    // the bottom right cell reaches the top right and bottom left cells
+    t.checkExpect(grid.openNeighbors(3, out), 2);
+    t.checkExpect(out[0], 1);
+    t.checkExpect(out[1], 2);
 
-    t.checkExpect(x2.place(mt, 3, 2, false), test);
+    // the top right cell only reaches the bottom right cell, NOT the top left one
+    t.checkExpect(grid.openNeighbors(1, out), 1);
+    t.checkExpect(out[0], 3);
   }
 
-  void testGetColorVertex(Tester t) {
+  void testConstructGraph(Tester t) {
     this.init();
 
-    t.checkExpect(this.v1.getColor(100, 60), new Color(210, 210, 210));
-    t.checkExpect(this.v1.getColor(34, 18), Color.pink);
-    t.checkExpect(new Vertex(0, 0).getColor(100, 60), Color.pink);
+    // constructgraph is called when you create a maze
+    Maze testMazeTiny = new Maze(1, 1, 4425);
+    t.checkExpect(testMazeTiny.grid.cells, new byte[] { 0 });
+    t.checkExpect(testMazeTiny.start, 0);
+    t.checkExpect(testMazeTiny.finish, 0);
+
+    // nothing but the grid and the marks is kept for each cell
+    Maze m2 = new Maze(2, 1, 425);
+    t.checkExpect(m2.grid.isOpen(0, MazeGrid.EAST), true);
+    t.checkExpect(m2.grid.isOpen(1, MazeGrid.WEST), true);
+    t.checkExpect(m2.marks, new byte[2]);
+    t.checkExpect(m2.start, 0);
+    t.checkExpect(m2.finish, 1);
+    // the search from both ends is only made when it's first used
+    t.checkExpect(m2.meeting == null, true);
+    m2.onKeyEvent("m");
+    t.checkExpect(m2.meeting.forward == m2.search, true);
   }
 
-  void testDrawInitialMaze(Tester t) {
+  void testPlace(Tester t) {
     this.init();
-    WorldScene scene = new WorldScene(2000, 1600);
+    Maze m = new Maze(3, 2, 1);
+    int floor = new Color(210, 210, 210).getRGB();
+
+    // cells are placed at the maze's own cell size: the ends are pink
+    t.checkExpect(m.cellSize, 25);
+    t.checkExpect(m.raster.pixels[12 * m.viewWidth + 12], Color.pink.getRGB());
+    t.checkExpect(m.raster.pixels[12 * m.viewWidth + 37], floor);
+    t.checkExpect(m.raster.pixels[37 * m.viewWidth + 62], Color.pink.getRGB());
+
+    // and move with it when it changes, less the view's offset
+    m.onKeyEvent("]");
+    t.checkExpect(m.cellSize, 50);
+    t.checkExpect(m.cellX(4), 50 - m.viewX);
+    t.checkExpect(m.cellY(4), 50 - m.viewY);
+    t.checkExpect(m.raster.pixels[(44 - m.viewY) * m.viewWidth + 44 - m.viewX],
+        Color.pink.getRGB());
+    t.checkExpect(m.raster.pixels[(75 - m.viewY) * m.viewWidth + 75 - m.viewX], floor);
+  }
 
-    Maze testMazeTiny = new Maze(1, 1, 1);
+  void testFloorColor(Tester t) {
+    this.init();
 
-    WorldImage vert = new RectangleImage(25, 25, "solid", Color.pink).movePinhole(-12, -12);
-    WorldImage side = new RectangleImage(2, 25, "solid", new Color(64, 64, 64)).movePinhole(-1,
-        -12);
-    WorldImage up = new RectangleImage(25, 2, "solid", new Color(64, 64, 64)).movePinhole(-12, -1);
+    // the start and the finish are pink, and what searches leave covers the floor
+    t.checkExpect(this.testMaze.floorColor(0), Color.pink);
+    t.checkExpect(this.testMaze.floorColor(59), Color.pink);
+    t.checkExpect(this.testMaze.floorColor(21), new Color(210, 210, 210));
+    t.checkExpect(this.testMaze.blockColor(21), new Color(210, 210, 210));
+    this.testMaze.marks[21] = Maze.SEEN;
+    t.checkExpect(this.testMaze.blockColor(21), Color.pink);
+    this.testMaze.marks[21] = Maze.SEEN | Maze.FROM_FINISH;
+    t.checkExpect(this.testMaze.blockColor(21), Color.cyan);
+    t.checkExpect(this.testMaze.isMarked(21, Maze.FROM_FINISH), true);
+    t.checkExpect(this.testMaze.isMarked(21, Maze.ON_PATH), false);
+  }
 
-    scene.placeImageXY(vert, 0, 0);
-    scene.placeImageXY(side, 0, 0);
-    scene.placeImageXY(up, 0, 25);
-    scene.placeImageXY(side, 25, 0);
-    scene.placeImageXY(up, 0, 0);
+  void testDrawInitialMaze(Tester t) {
+    this.init();
+    Maze testMazeTiny = new Maze(1, 1, 1);
 
     testMazeTiny.drawInitialMaze();
 
-    t.checkExpect(testMazeTiny.scene, scene);
-    t.checkExpect(scene, testMazeTiny.scene);
+    // the one cell is both start and finish, walled in on every side
+    RasterLayer walls = testMazeTiny.raster;
+    t.checkExpect(walls.pixels[12 * 28 + 12], Color.pink.getRGB());
+    t.checkExpect(walls.pixels[0 * 28 + 12], Color.darkGray.getRGB());
+    t.checkExpect(walls.pixels[26 * 28 + 12], Color.darkGray.getRGB());
+    t.checkExpect(walls.pixels[12 * 28 + 0], Color.darkGray.getRGB());
+    t.checkExpect(walls.pixels[12 * 28 + 26], Color.darkGray.getRGB());
+    t.checkExpect(walls.pixels[27 * 28 + 27], 0);
+    t.checkExpect(testMazeTiny.floorColor(testMazeTiny.start), Color.pink);
+
+    // the walls between open cells stay floor colored
+    Maze m = new Maze(2, 1, 1);
+    t.checkExpect(m.raster.pixels[12 * 52 + 25], new Color(255, 175, 175).getRGB());
+    t.checkExpect(m.raster.pixels[1 * 52 + 12], Color.darkGray.getRGB());
   }
 
   // getColor in Maze
   void testGetColorMaze(Tester t) {
     this.init();
 
-    Vertex v1 = this.testMaze.vertices.get(0).get(0);
-    Vertex v2 = this.testMaze.vertices.get(3).get(2);
-    Vertex v3 = this.testMaze.vertices.get(2).get(5);
-
-    t.checkExpect(this.testMaze.getColor(v1), Color.red);
-    t.checkExpect(this.testMaze.getColor(v2), new Color(11, 255, 0));
-    t.checkExpect(this.testMaze.getColor(v3), new Color(0, 255, 235));
+    t.checkExpect(this.testMaze.getColor(0), Color.red);
+    t.checkExpect(this.testMaze.getColor(32), new Color(11, 255, 0));
+    t.checkExpect(this.testMaze.getColor(25), new Color(0, 255, 235));
 
   }
 
@@ -999,8 +4004,8 @@ class ExamplesMaze {
     // expect it to be
     t.checkExpect(s1.isEmpty(), true);
 
-    // add a vertex to the Stack
-    s1.add(v1);
+    // add a cell to the Stack
+    s1.add(34);
 
     // expect Stack to no longer be empty
     t.checkExpect(s1.isEmpty(), false);
@@ -1013,8 +4018,8 @@ class ExamplesMaze {
     // expect to be true
     t.checkExpect(q1.isEmpty(), true);
 
-    // add vertex to Queue
-    q1.add(v2);
+    // add a cell to the Queue
+    q1.add(28);
 
     // expect Queue to no longer be empty
     t.checkExpect(q1.isEmpty(), false);
@@ -1025,13 +4030,13 @@ class ExamplesMaze {
 
     t.checkExpect(s1.isEmpty(), true);
 
-    s1.add(v3);
+    s1.add(34);
 
-    t.checkExpect(this.s1.contents.getFirst(), v3);
+    t.checkExpect(this.s1.contents.getFirst(), 34);
 
-    this.s1.add(v2);
+    this.s1.add(28);
 
-    t.checkExpect(this.s1.contents.getFirst(), v2);
+    t.checkExpect(this.s1.contents.getFirst(), 28);
   }
 
   void testQueueAdd(Tester t) {
@@ -1039,13 +4044,49 @@ class ExamplesMaze {
 
     t.checkExpect(q1.isEmpty(), true);
 
-    q1.add(v1);
+    q1.add(34);
+
+    t.checkExpect(this.q1.contents.getFirst(), 34);
+
+    this.q1.add(28);
+
+    t.checkExpect(this.q1.contents.getFirst(), 34);
+  }
+
+  void testIntStack(Tester t) {
+    this.init();
+    IntStack stack = new IntStack();
 
-    t.checkExpect(this.q1.contents.getFirst(), v1);
+    t.checkExpect(stack.isEmpty(), true);
+    // more items than the initial array holds
+    for (int i = 0; i < 40; i++) {
+      stack.add(i);
+    }
+    t.checkExpect(stack.isEmpty(), false);
+    for (int i = 39; i >= 0; i--) {
+      t.checkExpect(stack.pop(), i);
+    }
+    t.checkExpect(stack.isEmpty(), true);
+  }
 
-    this.q1.add(v2);
+  void testIntQueue(Tester t) {
+    this.init();
+    IntQueue queue = new IntQueue();
 
-    t.checkExpect(this.q1.contents.getFirst(), v1);
+    t.checkExpect(queue.isEmpty(), true);
+    // move the head along so the ring wraps around before it grows
+    for (int i = 0; i < 10; i++) {
+      queue.add(i);
+      queue.pop();
+    }
+    for (int i = 0; i < 40; i++) {
+      queue.add(i);
+    }
+    t.checkExpect(queue.items.length, 64);
+    for (int i = 0; i < 40; i++) {
+      t.checkExpect(queue.pop(), i);
+    }
+    t.checkExpect(queue.isEmpty(), true);
   }
 
   void testStackPop(Tester t) {
@@ -1053,11 +4094,11 @@ class ExamplesMaze {
 
     t.checkExpect(s1.isEmpty(), true);
 
-    s1.add(v1);
-    s1.add(v2);
+    s1.add(34);
+    s1.add(28);
 
-    t.checkExpect(s1.contents.pop(), v2);
-    t.checkExpect(s1.contents.pop(), v1);
+    t.checkExpect(s1.contents.pop(), 28);
+    t.checkExpect(s1.contents.pop(), 34);
 
     t.checkExpect(s1.isEmpty(), true);
   }
@@ -1067,11 +4108,11 @@ class ExamplesMaze {
 
     t.checkExpect(q1.isEmpty(), true);
 
-    q1.add(v1);
-    q1.add(v2);
+    q1.add(34);
+    q1.add(28);
 
-    t.checkExpect(q1.contents.pop(), v1);
-    t.checkExpect(q1.contents.pop(), v2);
+    t.checkExpect(q1.contents.pop(), 34);
+    t.checkExpect(q1.contents.pop(), 28);
 
     t.checkExpect(q1.isEmpty(), true);
   }
@@ -1085,7 +4126,43 @@ class ExamplesMaze {
 
     t.checkExpect(tm.searching, true);
 
-    t.checkExpect(tm.alreadySeen.size(), 1);
+    t.checkExpect(tm.alreadySeen.size, 1);
+  }
+
+  void testChangeSpeed(Tester t) {
+    this.init();
+
+    // mazes that fit the window search one cell per tick
+    t.checkExpect(this.testMaze.stepsPerTick, 1);
+
+    this.testMaze.onKeyEvent("b");
+    this.testMaze.onKeyEvent("+");
+    t.checkExpect(this.testMaze.stepsPerTick, 2);
+    this.testMaze.onTick();
+    t.checkExpect(this.testMaze.alreadySeen.size, 2);
+
+    this.testMaze.onKeyEvent("-");
+    this.testMaze.onKeyEvent("-");
+    t.checkExpect(this.testMaze.stepsPerTick, 1);
+
+    // a frame budget searches for a while each tick instead
+    this.testMaze.onKeyEvent("t");
+    t.checkExpect(this.testMaze.frameBudget, Maze.FRAME_BUDGET);
+    this.testMaze.onKeyEvent("-");
+    t.checkExpect(this.testMaze.frameBudget, Maze.FRAME_BUDGET / 2);
+    // how far a tick gets depends on the machine, but each tick takes a step
+    int ticks = 0;
+    while (this.testMaze.searching) {
+      int before = this.testMaze.search.visited;
+      this.testMaze.onTick();
+      ticks++;
+      t.checkExpect(this.testMaze.search.visited > before || !this.testMaze.searching, true);
+    }
+    t.checkExpect(ticks <= this.testMaze.bfsScore - 1, true);
+    t.checkExpect(this.testMaze.isMarked(59, Maze.ON_PATH), true);
+
+    this.testMaze.onKeyEvent("t");
+    t.checkExpect(this.testMaze.frameBudget, 0L);
   }
 
   void testOnKeyEvent(Tester t) {
@@ -1110,10 +4187,38 @@ class ExamplesMaze {
 
     t.checkExpect(tm.searching, true);
 
-    t.checkExpect(tm.alreadySeen.size(), 1);
+    t.checkExpect(tm.alreadySeen.size, 1);
 
   }
 
+  void testVisitedEpochs(Tester t) {
+    this.init();
+    Maze tiny = new Maze(2, 2, 1);
+
+    tiny.onKeyEvent("b");
+    while (!tiny.search.isDone()) {
+      tiny.searchHelp();
+    }
+    t.checkExpect(tiny.search.isSeen(0), true);
+
+    // a new search forgets every visited cell without touching the stamps
+    tiny.searching = false;
+    tiny.onKeyEvent("d");
+    t.checkExpect(tiny.search.isSeen(0), false);
+
+    // stamps that wrap around are cleared
+    tiny.search.epoch = -1;
+    tiny.search.nextEpoch();
+    t.checkExpect(tiny.search.epoch, (byte) 1);
+    t.checkExpect(tiny.search.seen, new byte[4]);
+
+    // the visit log is optional
+    tiny.logVisits = false;
+    tiny.searchHelp();
+    t.checkExpect(tiny.alreadySeen.size, 0);
+    t.checkExpect(tiny.search.seen[0], tiny.search.epoch);
+  }
+
   void testFinalPath(Tester t) {
     this.init();
 
@@ -1121,20 +4226,703 @@ class ExamplesMaze {
 
     tiny.onKeyEvent("b");
 
-    while (!tiny.worklist.isEmpty()) {
+    while (!tiny.search.isDone()) {
       tiny.searchHelp();
     }
     tiny.finalPath(tiny.finish);
 
-    Vertex v1 = tiny.vertices.get(0).get(0);
-    Vertex v2 = tiny.vertices.get(0).get(1);
-    Vertex v3 = tiny.vertices.get(1).get(0);
-    Vertex v4 = tiny.vertices.get(1).get(1);
+    t.checkExpect(tiny.isMarked(0, Maze.ON_PATH), true);
+    t.checkExpect(tiny.isMarked(1, Maze.ON_PATH), false);
+    t.checkExpect(tiny.isMarked(2, Maze.ON_PATH), true);
+    t.checkExpect(tiny.isMarked(3, Maze.ON_PATH), true);
+  }
+
+  void testPathTo(Tester t) {
+    this.init();
+
+    Maze tiny = new Maze(2, 2, 1);
+    tiny.onKeyEvent("b");
+    while (!tiny.search.isDone()) {
+      tiny.searchHelp();
+    }
+    tiny.finalPath(tiny.finish);
+
+    // top left, bottom left, bottom right
+    t.checkExpect(tiny.path, new int[] { 0, 2, 3 });
+    t.checkExpect(tiny.search.pathTo(0), new int[] { 0 });
+
+    // a path long enough to overflow a recursive reconstruction
+    GridSearch line = new GridSearch(new MazeGrid(100000, 1));
+    line.start = 0;
+    for (int cell = 1; cell < 100000; cell++) {
+      line.reachedFrom(cell, cell - 1);
+    }
+    t.checkExpect(line.cameFrom(99999), 99998);
+    int[] longPath = line.pathTo(99999);
+    t.checkExpect(longPath.length, 100000);
+    t.checkExpect(longPath[0], 0);
+    t.checkExpect(longPath[50000], 50000);
+  }
+
+  void testMazeSolver(Tester t) {
+    this.init();
+    MazeSolver solver = new MazeSolver(this.testMaze);
+
+    // solving headlessly scores the same as animating the search
+    SolveResult bfs = solver.bfs();
+    this.testMaze.onKeyEvent("b");
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(bfs.visited, this.testMaze.bfsScore);
+    t.checkExpect(bfs.path, this.testMaze.path);
+    t.checkExpect(bfs.nanos >= 0, true);
+
+    SolveResult dfs = solver.dfs();
+    this.testMaze.onKeyEvent("d");
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(dfs.visited, this.testMaze.dfsScore);
+    // a perfect maze has one path, whichever search finds it
+    t.checkExpect(dfs.path, bfs.path);
+
+    // batches of mazes need nothing but their grids
+    for (int seed = 0; seed < 50; seed++) {
+      MazeGrid grid = new MazeGrid(30, 20);
+      new BacktrackerGenerator().generate(grid, new Random(seed));
+      SolveResult result = new MazeSolver(grid, 0, grid.size() - 1).bfs();
+      t.checkExpect(result.path[0], 0);
+      t.checkExpect(result.path[result.path.length - 1], grid.size() - 1);
+      t.checkExpect(result.visited < grid.size(), true);
+    }
+
+    // a finish that can't be reached gives an empty path
+    MazeGrid walled = new MazeGrid(3, 3);
+    SolveResult none = new MazeSolver(walled, 0, 8).bfs();
+    t.checkExpect(none.path.length, 0);
+    t.checkExpect(none.visited, 1);
+  }
+
+  void testIndexedMinHeap(Tester t) {
+    this.init();
+    IndexedMinHeap heap = new IndexedMinHeap(6);
+
+    heap.push(0, 50);
+    heap.push(1, 20);
+    heap.push(2, 40);
+    heap.push(3, 10);
+    t.checkExpect(heap.contains(2), true);
+    t.checkExpect(heap.contains(4), false);
+
+    // lowering a priority moves the cell up, raising one is ignored
+    heap.push(0, 5);
+    heap.push(3, 90);
+
+    t.checkExpect(heap.pop(), 0);
+    t.checkExpect(heap.pop(), 3);
+    t.checkExpect(heap.pop(), 1);
+    t.checkExpect(heap.contains(1), false);
+    t.checkExpect(heap.pop(), 2);
+    t.checkExpect(heap.isEmpty(), true);
+  }
+
+  void testWeightedSearches(Tester t) {
+    this.init();
+    MazeSolver solver = new MazeSolver(this.testMaze);
+    SolveResult bfs = solver.bfs();
+
+    // a perfect maze has one path, which every search finds
+    SolveResult aStar = solver.aStar();
+    SolveResult dijkstra = solver.dijkstra(this.testMaze.edgeWeights());
+    t.checkExpect(aStar.path, bfs.path);
+    t.checkExpect(dijkstra.path, bfs.path);
+    t.checkExpect(aStar.visited <= bfs.visited, true);
+
+    // on a grid with loops Dijkstra takes the cheapest way round
+    MazeGrid open = new MazeGrid(3, 2);
+    for (int cell = 0; cell < 6; cell++) {
+      if (cell % 3 != 2) {
+        open.open(cell, MazeGrid.EAST);
+      }
+      if (cell < 3) {
+        open.open(cell, MazeGrid.SOUTH);
+      }
+    }
+    // the top row is expensive, so go down first
+    EdgeWeights costs = edge -> edge == MazeGrid.edge(0, MazeGrid.EAST) ? 100 : 1;
+    SolveResult cheapest = new MazeSolver(open, 0, 2).dijkstra(costs);
+    t.checkExpect(cheapest.path, new int[] { 0, 3, 4, 1, 2 });
+    // A* walks straight along the top
+    t.checkExpect(new MazeSolver(open, 0, 2).aStar().path, new int[] { 0, 1, 2 });
+
+    // the keys animate them and keep their own scores
+    this.testMaze.onKeyEvent("a");
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(this.testMaze.aStarScore, aStar.visited);
+    this.testMaze.onKeyEvent("j");
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(this.testMaze.dijkstraScore, dijkstra.visited);
+    t.checkExpect(this.testMaze.bfsScore, 0);
+  }
+
+  void testBidirectionalSearch(Tester t) {
+    this.init();
+    MazeSolver solver = new MazeSolver(this.testMaze);
+    SolveResult bfs = solver.bfs();
+    SolveResult both = solver.bidirectional();
+
+    // the joined path is the maze's one path, found expanding fewer cells
+    t.checkExpect(both.path, bfs.path);
+    t.checkExpect(both.visited <= bfs.visited, true);
+
+    // a corridor meets in the middle, where the forward search expands a cell
+    // the backward one already has
+    MazeGrid corridor = new MazeGrid(6, 1);
+    for (int cell = 0; cell < 5; cell++) {
+      corridor.open(cell, MazeGrid.EAST);
+    }
+    SolveResult middle = new MazeSolver(corridor, 0, 5).bidirectional();
+    t.checkExpect(middle.path, new int[] { 0, 1, 2, 3, 4, 5 });
+    t.checkExpect(middle.visited, 7);
+    t.checkExpect(new MazeSolver(corridor, 2, 2).bidirectional().path, new int[] { 2 });
+    t.checkExpect(new MazeSolver(corridor, 4, 1).bidirectional().path,
+        new int[] { 4, 3, 2, 1 });
+
+    // walled off ends never meet
+    MazeGrid split = new MazeGrid(2, 1);
+    t.checkExpect(new MazeSolver(split, 0, 1).bidirectional().path, new int[0]);
+
+    // the key animates it, coloring the cells found from the finish
+    this.testMaze.onKeyEvent("m");
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(this.testMaze.meetingScore, both.visited);
+    t.checkExpect(this.testMaze.path, bfs.path);
+    t.checkExpect(this.testMaze.isMarked(this.testMaze.finish, Maze.ON_PATH), true);
+    t.checkExpect(this.testMaze.isMarked(this.testMaze.finish, Maze.FROM_FINISH), true);
+    t.checkExpect(this.testMaze.isMarked(this.testMaze.start, Maze.FROM_FINISH), false);
+    t.checkExpect(this.testMaze.isMarked(this.testMaze.start, Maze.SEEN), true);
+  }
+
+  void testSearchRace(Tester t) {
+    this.init();
+    MazeSolver solver = new MazeSolver(this.testMaze);
+    SolveResult bfs = solver.bfs();
+    SolveResult dfs = solver.dfs();
+
+    // each racer gets the same result as searching alone
+    SearchRace race = new SearchRace(this.testMaze.grid, 0, this.testMaze.grid.size() - 1);
+    race.start();
+    race.join();
+    t.checkExpect(race.isDone(), true);
+    t.checkExpect(race.bfs.count, bfs.visited);
+    t.checkExpect(race.dfs.count, dfs.visited);
+    t.checkExpect(race.bfs.path, bfs.path);
+    t.checkExpect(race.dfs.path, bfs.path);
+    t.checkExpect(race.fewerVisited(), bfs.visited <= dfs.visited ? "BFS" : "DFS");
+    t.checkExpect(race.bfs.order[0], 0);
+
+    // a cancelled race stops without a path
+    SearchRace stopped = new SearchRace(this.testMaze.grid, 0, this.testMaze.grid.size() - 1);
+    stopped.cancel();
+    stopped.start();
+    stopped.join();
+    t.checkExpect(stopped.bfs.count, 0);
+    t.checkExpect(stopped.bfs.path, new int[0]);
+
+    // the key races them in the world, keeping both scores
+    this.testMaze.onKeyEvent("c");
+    t.checkExpect(this.testMaze.searching, true);
+    while (this.testMaze.searching) {
+      this.testMaze.onTick();
+    }
+    t.checkExpect(this.testMaze.bfsScore, bfs.visited);
+    t.checkExpect(this.testMaze.dfsScore, dfs.visited);
+    t.checkExpect(this.testMaze.path, bfs.path);
+    t.checkExpect(this.testMaze.bfsNanos > 0, true);
+    t.checkExpect(this.testMaze.worldEnds().worldEnds, true);
+
+    // the racers only get as far as the ticks let them, and pausing stops them
+    Maze paced = new Maze(10, 6, 2);
+    paced.onKeyEvent("c");
+    SearchRace first = paced.race;
+    paced.onTick();
+    paced.onKeyEvent("p");
+    paced.onTick();
+    paced.onTick();
+    try {
+      Thread.sleep(20);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    t.checkExpect(first.bfs.count <= paced.stepsPerTick, true);
+    t.checkExpect(first.dfs.count <= paced.stepsPerTick, true);
+    t.checkExpect(paced.race, first);
+
+    // starting another race after a pause cancels the paused one
+    paced.onKeyEvent("c");
+    first.join();
+    t.checkExpect(first.bfs.cancelled && first.isDone(), true);
+    t.checkExpect(paced.race == first, false);
+
+    // and so does a search, which then animates normally
+    SearchRace second = paced.race;
+    paced.onKeyEvent("p");
+    paced.onKeyEvent("b");
+    second.join();
+    t.checkExpect(second.isDone(), true);
+    t.checkExpect(paced.race, null);
+    paced.onTick();
+    t.checkExpect(paced.searching, true);
+    t.checkExpect(paced.bfsScore, 1);
+
+    // pausing a race keeps its scores, and doesn't end the world
+    Maze paused = new Maze(40, 20, 3);
+    paused.onKeyEvent("c");
+    while (paused.bfsScore == 0 || paused.dfsScore == 0) {
+      paused.onTick();
+      try {
+        Thread.sleep(1);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    paused.onKeyEvent("p");
+    int bfsScore = paused.bfsScore;
+    int dfsScore = paused.dfsScore;
+    t.checkExpect(paused.worldEnds().worldEnds, false);
+    t.checkExpect(paused.race.isDone(), false);
+    t.checkExpect(paused.bfsScore, bfsScore);
+    t.checkExpect(paused.dfsScore, dfsScore);
+  }
+
+  void testParallelBfs(Tester t) {
+    this.init();
+    MazeGrid grid = this.testMaze.grid;
+    int last = grid.size() - 1;
+    ForkJoinPool pool = new ForkJoinPool(4);
+    ParallelBfs bfs = new ParallelBfs(pool);
+
+    // every distance matches the length of the sequential BFS path
+    int[] dist = bfs.distances(grid, 0, -1);
+    MazeSolver solver = new MazeSolver(grid, 0, last);
+    boolean same = true;
+    for (int cell = 0; cell < grid.size(); cell++) {
+      solver.finish = cell;
+      same = same && dist[cell] == solver.bfs().path.length - 1;
+    }
+    t.checkExpect(same, true);
+    solver.finish = last;
+    t.checkExpect(new MazeSolver(grid, 0, last).parallelBfs(pool).path, solver.bfs().path);
+
+    // on an open grid large enough to split its levels, the distances are the
+    // Manhattan distances and the path is as short
+    MazeGrid open = new MazeGrid(300, 300);
+    for (int cell = 0; cell < open.size(); cell++) {
+      if (cell % 300 != 299) {
+        open.open(cell, MazeGrid.EAST);
+      }
+      if (cell < open.size() - 300) {
+        open.open(cell, MazeGrid.SOUTH);
+      }
+    }
+    int[] manhattan = bfs.distances(open, 0, -1);
+    boolean exact = true;
+    for (int cell = 0; cell < open.size(); cell++) {
+      exact = exact && manhattan[cell] == cell % 300 + cell / 300;
+    }
+    t.checkExpect(exact, true);
+    t.checkExpect(bfs.expanded, open.size());
+    int[] path = ParallelBfs.pathTo(open, manhattan, open.size() - 1);
+    t.checkExpect(path.length, 599);
+    boolean connected = true;
+    for (int i = 1; i < path.length; i++) {
+      int dir = open.direction(path[i - 1], path[i]);
+      connected = connected && open.neighbor(path[i - 1], dir) == path[i]
+          && open.isOpen(path[i - 1], dir);
+    }
+    t.checkExpect(connected, true);
+
+    // cells walled off from the start are never reached
+    MazeGrid split = new MazeGrid(2, 1);
+    t.checkExpect(bfs.distances(split, 0, -1), new int[] { 0, -1 });
+    t.checkExpect(ParallelBfs.pathTo(split, bfs.distances(split, 0, 1), 1), new int[0]);
+    pool.shutdown();
+  }
+
+  void testBitboardSolver(Tester t) {
+    this.init();
+    ForkJoinPool pool = new ForkJoinPool(2);
+    ParallelBfs bfs = new ParallelBfs(pool);
+
+    MazeGrid grid = this.testMaze.grid;
+    MazeSolver solver = new MazeSolver(grid, 0, grid.size() - 1);
+    t.checkExpect(solver.bitboard().path, solver.bfs().path);
+    t.checkExpect(new BitboardSolver(grid).distances(0, -1), bfs.distances(grid, 0, -1));
+
+    // rows wider than a word, with loops, flooded from the middle
+    MazeGrid wide = new MazeGrid(150, 7);
+    new KruskalGenerator().generate(wide, new Random(11));
+    for (int cell = 0; cell < wide.size(); cell += 13) {
+      if (cell % 150 != 149) {
+        wide.open(cell, MazeGrid.EAST);
+      }
+      if (cell < wide.size() - 150) {
+        wide.open(cell, MazeGrid.SOUTH);
+      }
+    }
+    BitboardSolver flood = new BitboardSolver(wide);
+    t.checkExpect(flood.distances(500, -1), bfs.distances(wide, 500, -1));
+    t.checkExpect(flood.reached, wide.size());
+    // reusing the solver from another start gives the same as a fresh one
+    t.checkExpect(flood.distances(64, 1049), bfs.distances(wide, 64, 1049));
+    t.checkExpect(new MazeSolver(wide, 64, 1049).bitboard().path.length,
+        new MazeSolver(wide, 64, 1049).bfs().path.length);
+
+    // cells walled off from the start are never reached
+    t.checkExpect(new BitboardSolver(new MazeGrid(2, 2)).distances(3, -1),
+        new int[] { -1, -1, -1, 0 });
+    pool.shutdown();
+  }
+
+  void testDirtyCells(Tester t) {
+    this.init();
+    Maze m = new Maze(3, 3, 4);
+    m.onKeyEvent("b");
+    m.searchHelp();
+    m.searchHelp();
+
+    // each expanded cell waits to be drawn once
+    t.checkExpect(m.dirty.size, 2);
+    t.checkExpect(m.dirty.pop(), 0);
+    m.makeScene();
+    t.checkExpect(m.dirty.isEmpty(), true);
+
+    // the final path is drawn once it's found
+    while (m.searching) {
+      m.onTick();
+    }
+    t.checkExpect(m.dirty.size, m.bfsScore - 2 + m.path.length);
+    m.makeScene();
+    t.checkExpect(m.dirty.isEmpty(), true);
+
+    m.reset();
+    t.checkExpect(m.dirty.isEmpty(), true);
+  }
+
+  void testImageCache(Tester t) {
+    this.init();
+    Maze m = new Maze(3, 3, 4);
+    m.makeScene();
+    Color[] palette = m.palette;
+    WorldImage dfs = m.scoreImages[1];
+
+    // the images are made once and shared by every frame
+    m.makeScene();
+    t.checkExpect(m.palette == palette, true);
+    t.checkExpect(m.shownScores, new int[] { 0, 0, 0, 0, 0 });
+
+    // the palette runs through the same hues as getColor
+    t.checkExpect(m.palette[0], m.getColor(m.start));
+    t.checkExpect(m.palette[Maze.HUES - 1], m.getColor(m.finish));
+    t.checkExpect(m.pathColor(m.finish), m.getColor(m.finish));
+
+    // a score's text is made again only once it changes
+    m.onKeyEvent("b");
+    m.onTick();
+    m.makeScene();
+    t.checkExpect(m.shownScores, new int[] { 1, 0, 0, 0, 0 });
+    t.checkExpect(m.scoreImages[1] == dfs, true);
+  }
+
+  void testRasterLayer(Tester t) {
+    this.init();
+    RasterLayer raster = new RasterLayer(6, 4);
+
+    // fills are clipped to the image and widen the touched rectangle
+    raster.fill(4, 1, 5, 2, Color.red);
+    raster.fill(-1, 3, 2, 9, Color.blue);
+    t.checkExpect(raster.pixels[1 * 6 + 5], Color.red.getRGB());
+    t.checkExpect(raster.pixels[2 * 6 + 4], Color.red.getRGB());
+    t.checkExpect(raster.pixels[3 * 6 + 0], Color.blue.getRGB());
+    t.checkExpect(raster.pixels[3 * 6 + 1], 0);
+    t.checkExpect(new int[] { raster.left, raster.top, raster.right, raster.bottom },
+        new int[] { 0, 1, 6, 4 });
+    t.checkExpect(raster.image.getRGB(5, 1), Color.red.getRGB());
+
+    // copying out the touched pixels forgets them
+    ComputedPixelImage target = new ComputedPixelImage(6, 4);
+    raster.copyTo(target);
+    t.checkExpect(target.getPixel(4, 2), Color.red);
+    t.checkExpect(target.getPixel(0, 3), Color.blue);
+    t.checkExpect(raster.left >= raster.right, true);
+
+    // only what's touched afterwards is copied
+    raster.fill(0, 0, 1, 1, Color.green);
+    target.setPixel(4, 2, Color.black);
+    raster.copyTo(target);
+    t.checkExpect(target.getPixel(0, 0), Color.green);
+    t.checkExpect(target.getPixel(4, 2), Color.black);
+  }
+
+  void testViewport(Tester t) {
+    this.init();
+    Maze big = new Maze(300, 200, 7);
+    int floor = new Color(210, 210, 210).getRGB();
+
+    // a maze bigger than the window gets a window-sized view of its top left
+    t.checkExpect(big.cellSize, 10);
+    t.checkExpect(big.viewWidth, 1200);
+    t.checkExpect(big.viewHeight, 800);
+    t.checkExpect(big.raster.pixels.length, 1200 * 800);
+    t.checkExpect(big.isVisible(119), true);
+    t.checkExpect(big.isVisible(120), false);
+    t.checkExpect(big.raster.pixels[5 * 1200 + 5], Color.pink.getRGB());
+
+    // panning moves the view a quarter of the way across, and back
+    big.onKeyEvent("right");
+    t.checkExpect(big.viewX, 300);
+    t.checkExpect(big.isVisible(0), false);
+    t.checkExpect(big.raster.pixels[5 * 1200 + 5], floor);
+    big.onKeyEvent("left");
+    big.onKeyEvent("left");
+    t.checkExpect(big.viewX, 0);
+    t.checkExpect(big.raster.pixels[5 * 1200 + 5], Color.pink.getRGB());
+
+    // zoomed out, each cell is a block without walls
+    big.onKeyEvent("[");
+    t.checkExpect(big.cellSize, 5);
+    t.checkExpect(big.raster.pixels[0], Color.pink.getRGB());
+    t.checkExpect(big.raster.pixels[2 * 1200 + 5], floor);
+
+    // at one pixel per cell the whole maze fits, leaving the rest of the view clear
+    big.onKeyEvent("[");
+    big.onKeyEvent("[");
+    big.onKeyEvent("[");
+    t.checkExpect(big.cellSize, 1);
+    t.checkExpect(big.raster.pixels[199 * 1200 + 299], Color.pink.getRGB());
+    t.checkExpect(big.raster.pixels[300], 0);
+
+    // searching draws the cells it reaches in the view
+    big.onKeyEvent("b");
+    while (big.searching) {
+      big.onTick();
+    }
+    big.makeScene();
+    t.checkExpect(big.frame.getPixel(0, 0), big.pathColor(big.start));
+
+    // zooming in stops at the largest cell size
+    for (int i = 0; i < 10; i++) {
+      big.onKeyEvent("]");
+    }
+    t.checkExpect(big.cellSize, Maze.MAX_CELL_SIZE);
+    t.checkExpect(big.viewX <= 300 * Maze.MAX_CELL_SIZE + 2 - 1200, true);
+
+    // past a pixel per cell, each pixel stands for a square of cells, until the
+    // whole maze fits in the view
+    Maze wide = new Maze(2500, 60, 3);
+    for (int i = 0; i < 10; i++) {
+      wide.onKeyEvent("[");
+    }
+    t.checkExpect(wide.cellSize, 1);
+    t.checkExpect(wide.blockSize, 4);
+    t.checkExpect(wide.viewX, 0);
+    t.checkExpect(wide.isVisible(wide.grid.size() - 1), true);
+    t.checkExpect(wide.cellX(wide.grid.size() - 1), 624);
+    t.checkExpect(wide.raster.pixels[0], Color.pink.getRGB());
+    t.checkExpect(wide.raster.pixels[10 * 1200 + 300], floor);
+    t.checkExpect(wide.raster.pixels[10 * 1200 + 700], 0);
+
+    // a square shows the most telling of its cells, and marked cells draw into it
+    int cell = 41 * 2500 + 1201;
+    wide.raced[cell] = 1;
+    wide.redraw();
+    t.checkExpect(wide.raster.pixels[10 * 1200 + 300], Color.pink.getRGB());
+    wide.raced[cell + 1] = 2;
+    wide.drawState(cell + 1);
+    t.checkExpect(wide.raster.pixels[10 * 1200 + 300], Color.orange.getRGB());
+
+    // zooming back in divides the squares again, around the same point
+    wide.onKeyEvent("]");
+    t.checkExpect(wide.blockSize, 2);
+    t.checkExpect(wide.isVisible(0), false);
+    t.checkExpect(wide.isVisible(cell), true);
+  }
+
+  void testPngExporter(Tester t) {
+    this.init();
+    // wider than a tile and taller than a band, so both are split
+    MazeGrid grid = new MazeGrid(150, 50);
+    new EllerGenerator().generate(grid, new Random(4));
+    int[] path = new MazeSolver(grid, 0, grid.size() - 1).bfs().path;
+    long[] visited = PngExporter.bitset(grid.size(), new int[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+    BufferedImage image = this.exportImage(new PngExporter(ForkJoinPool.commonPool(), 4), grid,
+        visited, path);
+    t.checkExpect(image.getWidth(), 601);
+    t.checkExpect(image.getHeight(), 201);
+
+    // the corners and borders are walls, the start is the first hue of the path
+    t.checkExpect(image.getRGB(0, 0), Color.darkGray.getRGB());
+    t.checkExpect(image.getRGB(600, 100), Color.darkGray.getRGB());
+    t.checkExpect(image.getRGB(300, 200), Color.darkGray.getRGB());
+    t.checkExpect(image.getRGB(2, 2), Color.getHSBColor(0, 1, 1).getRGB());
+    t.checkExpect(image.getRGB(601 - 3, 201 - 3),
+        Color.getHSBColor(67f / 72, 1, 1).getRGB());
+
+    // a visited cell off the path is pink, an unvisited one is the floor
+    long[] onPath = PngExporter.bitset(grid.size(), path);
+    int offPath = -1;
+    for (int cell = 0; cell < grid.size(); cell++) {
+      if ((onPath[cell >>> 6] & 1L << cell) == 0) {
+        if (cell < 8) {
+          t.checkExpect(image.getRGB(cell * 4 + 2, 2), Color.pink.getRGB());
+        }
+        else {
+          offPath = cell;
+        }
+      }
+    }
+    t.checkExpect(image.getRGB(offPath % 150 * 4 + 2, offPath / 150 * 4 + 2),
+        new Color(210, 210, 210).getRGB());
+    // walls between cells follow the grid
+    t.checkExpect(image.getRGB(4, 2) == Color.darkGray.getRGB(),
+        !grid.isOpen(1, MazeGrid.WEST));
+    t.checkExpect(image.getRGB(2, 4) == Color.darkGray.getRGB(),
+        !grid.isOpen(150, MazeGrid.NORTH));
+
+    // the walls on the seams between tiles and between bands follow the grid too
+    boolean seams = true;
+    for (int row = 0; row < 50; row++) {
+      seams = seams && (image.getRGB(256, row * 4 + 2) == Color.darkGray.getRGB())
+          == !grid.isOpen(row * 150 + 64, MazeGrid.WEST);
+    }
+    for (int col = 0; col < 150; col++) {
+      seams = seams && (image.getRGB(col * 4 + 2, 64) == Color.darkGray.getRGB())
+          == !grid.isOpen(16 * 150 + col, MazeGrid.NORTH);
+    }
+    t.checkExpect(seams, true);
+
+    // every pixel of a small maze, worked out by hand: walls, the path's first and
+    // last hues, a visited cell and the floor
+    MazeGrid small = new MazeGrid(2, 2);
+    small.open(0, MazeGrid.EAST);
+    small.open(0, MazeGrid.SOUTH);
+    small.open(1, MazeGrid.SOUTH);
+    long[] one = PngExporter.bitset(4, new int[] { 1 });
+    int[] ends = new int[] { 0, 3 };
+    t.checkExpect(this.sameImage(
+        this.exportImage(new PngExporter(ForkJoinPool.commonPool(), 3), small, one, ends),
+        new String[] { "WWWWWWW", "WSSVVVW", "WSSVVVW", "WFFWEEW", "WFFWEEW", "WFFWEEW",
+            "WWWWWWW" }), true);
+    // two pixels are enough to leave each cell a floor between its walls
+    t.checkExpect(this.sameImage(
+        this.exportImage(new PngExporter(ForkJoinPool.commonPool(), 2), small, one, ends),
+        new String[] { "WWWWW", "WSVVW", "WFWEW", "WFWEW", "WWWWW" }), true);
+
+    // a cell one pixel wide would be all walls
+    t.checkConstructorException(new IllegalArgumentException(
+        "Cells must be at least 2 pixels wide"), "PngExporter", ForkJoinPool.commonPool(), 1);
+  }
+
+  void testExportPngAfterReset(Tester t) {
+    this.init();
+    Maze m = new Maze(6, 4, 2);
+    m.onKeyEvent("b");
+    while (m.searching) {
+      m.onTick();
+    }
+    t.checkExpect(m.path.length > 0, true);
+
+    // resetting leaves no final path to export
+    m.onKeyEvent("r");
+    t.checkExpect(m.path, new int[0]);
+    BufferedImage image;
+    try {
+      File file = File.createTempFile("maze", ".png");
+      file.deleteOnExit();
+      m.exportPng(file.getPath(), 4, ForkJoinPool.commonPool());
+      image = ImageIO.read(file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // so every pixel is a wall or the bare floor
+    int pathPixels = 0;
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        int rgb = image.getRGB(x, y);
+        if (rgb != PngExporter.WALL && rgb != PngExporter.FLOOR) {
+          pathPixels++;
+        }
+      }
+    }
+    t.checkExpect(image.getWidth(), 25);
+    t.checkExpect(pathPixels, 0);
+  }
+
+  // returns the image the exporter writes for the maze, decoded again
+  BufferedImage exportImage(PngExporter exporter, MazeGrid grid, long[] visited, int[] path) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exporter.export(grid, visited, path, out);
+    try {
+      return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-    t.checkExpect(v1.inFinalPath, true);
-    t.checkExpect(v2.inFinalPath, false);
-    t.checkExpect(v3.inFinalPath, true);
-    t.checkExpect(v4.inFinalPath, true);
+  // does every pixel of the image have the color its letter in the rows stands
+  // for? W is a wall, S and E the first and last hues of the path, V a visited
+  // cell and F the floor
+  boolean sameImage(BufferedImage image, String[] rows) {
+    boolean same = image.getHeight() == rows.length && image.getWidth() == rows[0].length();
+    for (int y = 0; y < rows.length && same; y++) {
+      for (int x = 0; x < rows[y].length(); x++) {
+        char c = rows[y].charAt(x);
+        Color color = c == 'W' ? Color.darkGray
+            : c == 'S' ? Color.getHSBColor(0, 1, 1)
+                : c == 'E' ? Color.getHSBColor(67f / 72, 1, 1)
+                    : c == 'V' ? Color.pink : new Color(210, 210, 210);
+        same = same && image.getRGB(x, y) == color.getRGB();
+      }
+    }
+    return same;
+  }
+
+  void testScorePanel(Tester t) {
+    this.init();
+
+    // at the large mazes' panel size a label is as tall as its row, so the
+    // labels stack without overlapping and still fit in the window
+    Maze big = new Maze(300, 200, 7);
+    big.makeScene();
+    t.checkExpect(big.panelSize, 10);
+    t.checkExpect(big.rowHeight, 100);
+    t.checkExpect(big.scoreBackground, new RectangleImage(180, 100, "solid", Color.white));
+    for (int row = 0; row + 1 < Maze.PANEL_ROWS; row++) {
+      t.checkExpect(big.panelY(row + 1) - big.panelY(row), big.rowHeight);
+    }
+    t.checkExpect(big.panelY(0) - big.rowHeight / 2 >= 0, true);
+    t.checkExpect(big.panelY(Maze.PANEL_ROWS - 1) + big.rowHeight / 2 <= big.viewHeight + 2,
+        true);
+
+    // in a short window the rows shrink so the last one still fits
+    Maze wide = new Maze(60, 3, 7);
+    wide.makeScene();
+    t.checkExpect(wide.viewHeight + 2, 34);
+    t.checkExpect(wide.rowHeight, 4);
+    t.checkExpect(wide.scoreBackground, new RectangleImage(180, 4, "solid", Color.white));
+    t.checkExpect(wide.panelY(Maze.PANEL_ROWS - 1) + wide.rowHeight / 2 <= 34, true);
   }
 
   void testReset(Tester t) {
@@ -1144,21 +4932,20 @@ class ExamplesMaze {
 
     tiny.onKeyEvent("b");
 
-    while (!tiny.worklist.isEmpty()) {
+    while (!tiny.search.isDone()) {
       tiny.searchHelp();
     }
     tiny.finalPath(tiny.finish);
+    t.checkExpect(tiny.isMarked(0, Maze.ON_PATH), true);
 
-    Vertex v1 = tiny.vertices.get(0).get(0);
-    Vertex v2 = tiny.vertices.get(0).get(1);
-    Vertex v3 = tiny.vertices.get(1).get(0);
-    Vertex v4 = tiny.vertices.get(1).get(1);
-
-    tiny.reset(tiny.start, tiny.finish);
+    tiny.reset();
 
-    t.checkExpect(v1.c, new Color(255, 175, 175));
-    t.checkExpect(v2.c, new Color(210, 210, 210));
-    t.checkExpect(v3.c, new Color(210, 210, 210));
-    t.checkExpect(v4.c, new Color(255, 175, 175));
+    // the same maze, with nothing the search left on it
+    t.checkExpect(tiny.marks, new byte[4]);
+    t.checkExpect(tiny.alreadySeen.size, 0);
+    t.checkExpect(tiny.blockColor(0), new Color(255, 175, 175));
+    t.checkExpect(tiny.blockColor(1), new Color(210, 210, 210));
+    t.checkExpect(tiny.blockColor(2), new Color(210, 210, 210));
+    t.checkExpect(tiny.blockColor(3), new Color(255, 175, 175));
   }
 }
\ No newline at end of file